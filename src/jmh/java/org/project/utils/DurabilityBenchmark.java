@@ -0,0 +1,77 @@
+package org.project.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a 1,000-file project into a fresh directory with each durability policy.
+ * The directory lives below java.io.tmpdir unless the "directory" parameter names
+ * another location, e.g. a tmpfs or the disk release builds write to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DurabilityBenchmark {
+    private static final int PACKAGES = 20;
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    @Param({"NONE", "BATCHED", "PER_FILE"})
+    public DirectorySink.Durability durability;
+
+    @Param("")
+    public String directory;
+
+    private List<String> spec;
+    private Path work;
+    private Path output;
+    private GenerationOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        spec = new ArrayList<>();
+        spec.add("```");
+        spec.add("service/");
+        spec.add("├── src/");
+        spec.add("│   └── java/");
+        for (int p = 0; p < PACKAGES; p++) {
+            spec.add("│       ├── package" + p + "/");
+            for (int c = 0; c < CLASSES_PER_PACKAGE; c++) {
+                spec.add("│       │   ├── Service" + c + ".java");
+            }
+        }
+        spec.add("```");
+
+        work = directory.isEmpty() ? Files.createTempDirectory("durability-benchmark") :
+                Files.createTempDirectory(Paths.get(directory), "durability-benchmark");
+        output = work.resolve("out");
+        options = new GenerationOptions().setDurability(durability).setReportLevel(ProgressReporter.Level.QUIET);
+    }
+
+    @Benchmark
+    public void generate() throws IOException {
+        try (OutputSink sink = OutputSink.open(output, false, options);
+             ProgressReporter reporter = new ProgressReporter(options.getReportLevel());
+             ParallelWriter writer = new ParallelWriter(sink, options)) {
+            GenericProjectStructureGenerator.generateProjectStructure(spec, writer, reporter);
+            sink.commit();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        ParallelDelete.deleteTree(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ParallelDelete.deleteTree(work);
+    }
+}
@@ -0,0 +1,104 @@
+package org.project.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first file of a fresh GenericProjectStructureGenerator process on the bundled
+ * IntelliJ spec, with only the JDK's default CDS archive and with the application
+ * archive from the "cds" profile. Build both first:
+ *
+ * <pre>
+ * mvn -Pcds package
+ * mvn -Pbenchmarks compile exec:exec -Djmh.args="StartupBenchmark"
+ * </pre>
+ *
+ * The jar and archive paths are parameters, relative to the project directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 30)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"off", "on"})
+    public String appCds;
+
+    @Param("target/ProjectGeneratorFromMarkdown-1.0-SNAPSHOT.jar")
+    public String jar;
+
+    @Param("target/ProjectGeneratorFromMarkdown.jsa")
+    public String archive;
+
+    private Path work;
+    private Path spec;
+    private Path output;
+    private Path firstFile;
+    private List<String> command;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path jarFile = Paths.get(jar).toAbsolutePath();
+        Path archiveFile = Paths.get(archive).toAbsolutePath();
+        if (!Files.exists(jarFile) || ("on".equals(appCds) && !Files.exists(archiveFile))) {
+            throw new IllegalStateException("Build the jar and the archive first with: mvn -Pcds package");
+        }
+
+        work = Files.createTempDirectory("startup-benchmark");
+        spec = work.resolve("spec.md");
+        try (InputStream in = StartupBenchmark.class.getResourceAsStream("/intellij_project_structure.md")) {
+            Files.copy(in, spec);
+        }
+        output = work.resolve("out");
+
+        // The first file the generator writes, found by rendering the spec in memory
+        CapturingSink capture = new CapturingSink(false);
+        try (ProgressReporter quiet = new ProgressReporter(ProgressReporter.Level.QUIET);
+             ParallelWriter writer = new ParallelWriter(capture, new GenerationOptions())) {
+            GenericProjectStructureGenerator.generateProjectStructure(Files.readAllLines(spec), writer, quiet);
+        }
+        firstFile = output.resolve(capture.getFiles().keySet().iterator().next());
+
+        // Same jar path as at dump time, or the JVM silently ignores the archive
+        command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if ("on".equals(appCds)) {
+            command.add("-XX:SharedArchiveFile=" + archiveFile);
+        }
+        command.addAll(List.of("-cp", jarFile.toString(), "org.project.utils.GenericProjectStructureGenerator",
+                "--quiet", spec.toString(), output.toString()));
+    }
+
+    @Benchmark
+    public Process timeToFirstFile() throws IOException {
+        process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        while (!Files.exists(firstFile)) {
+            if (!process.isAlive() && !Files.exists(firstFile)) {
+                throw new IllegalStateException("Generator exited with " + process.exitValue() + " before writing a file");
+            }
+            Thread.onSpinWait();
+        }
+        return process;
+    }
+
+    @TearDown(Level.Invocation)
+    public void finishRun() throws IOException, InterruptedException {
+        process.waitFor();
+        ParallelDelete.deleteTree(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ParallelDelete.deleteTree(work);
+    }
+}
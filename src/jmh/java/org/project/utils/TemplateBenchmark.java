@@ -0,0 +1,115 @@
+package org.project.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders 100k Java stubs with the former String.format text blocks and with the
+ * compiled templates generateJavaContent now uses. Both variants produce UTF-8 bytes,
+ * since that is what the sinks write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+    private static final int STUBS = 100_000;
+    private static final String PACKAGE = "package com.example.service.impl;\n\n";
+
+    private final Template testTemplate = Template.load("/templates/java-test.tmpl", "package", "className");
+    private final Template exceptionTemplate = Template.load("/templates/java-exception.tmpl", "package", "className");
+    private final Template interfaceTemplate = Template.load("/templates/java-interface.tmpl", "package", "className");
+    private final Template classTemplate = Template.load("/templates/java-class.tmpl", "package", "className");
+
+    private String[] classNames;
+
+    @Setup
+    public void setUp() {
+        // Same mix of test, exception, interface and plain class stubs
+        String[] suffixes = {"Test", "Exception", "Interface", "Service"};
+        classNames = new String[STUBS];
+        for (int i = 0; i < STUBS; i++) {
+            classNames[i] = "Book" + i + suffixes[i % suffixes.length];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STUBS)
+    public void stringFormat(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(formatJavaContent(PACKAGE, className).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STUBS)
+    public void compiledTemplate(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(renderJavaContent(PACKAGE, className));
+        }
+    }
+
+    private byte[] renderJavaContent(String packageName, String className) {
+        if (className.endsWith("Test")) {
+            return testTemplate.render(packageName, className);
+        } else if (className.endsWith("Exception")) {
+            return exceptionTemplate.render(packageName, className);
+        } else if (className.endsWith("Interface") || className.startsWith("I")) {
+            return interfaceTemplate.render(packageName, className);
+        }
+        return classTemplate.render(packageName, className);
+    }
+
+    // The String.format path generateJavaContent used before the template engine
+    private static String formatJavaContent(String packageName, String className) {
+        if (className.endsWith("Test")) {
+            return packageName + String.format("""
+                import org.junit.jupiter.api.Test;
+                import static org.junit.jupiter.api.Assertions.*;
+
+                public class %s {
+
+                    @Test
+                    public void testExample() {
+                        // TODO: Implement test
+                        assertTrue(true);
+                    }
+                }
+                """, className);
+        } else if (className.endsWith("Exception")) {
+            return packageName + String.format("""
+                public class %s extends Exception {
+
+                    public %s(String message) {
+                        super(message);
+                    }
+
+                    public %s(String message, Throwable cause) {
+                        super(message, cause);
+                    }
+                }
+                """, className, className, className);
+        } else if (className.endsWith("Interface") || className.startsWith("I")) {
+            return packageName + String.format("""
+                public interface %s {
+                    // TODO: Define interface methods
+                }
+                """, className);
+        }
+        return packageName + String.format("""
+                public class %s {
+
+                    public %s() {
+                        // TODO: Implement constructor
+                    }
+
+                    // TODO: Add methods
+                }
+                """, className, className);
+    }
+}
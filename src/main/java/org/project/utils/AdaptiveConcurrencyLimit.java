@@ -0,0 +1,170 @@
+package org.project.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of operations in flight and adapts the limit to their latency
+ * with additive increase and multiplicative decrease (AIMD).
+ *
+ * <p>While the limit is fully used and the smoothed latency stays within
+ * {@value #TOLERANCE} times the baseline, the limit grows by one per limit's worth of
+ * completions. When latency rises above that, or an operation fails, the limit is cut
+ * to {@value #BACKOFF} of its value, at most once per limit's worth of completions so
+ * a single slow batch is not punished repeatedly. The baseline is the fastest latency
+ * seen in the current or previous window of {@value #BASELINE_WINDOW} operations, so
+ * it follows a file system that gets permanently slower.</p>
+ */
+public class AdaptiveConcurrencyLimit {
+    private static final double TOLERANCE = 2.0;
+    private static final double BACKOFF = 0.75;
+    private static final double SMOOTHING = 0.1;
+    private static final int BASELINE_WINDOW = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double smoothedNanos;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private long previousWindowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private int completionsSinceDecrease;
+
+    // Statistics for the final report
+    private long operations;
+    private long failures;
+    private long totalNanos;
+    private long maxNanos;
+    private double limitSum;
+    private int peakLimit;
+
+    public AdaptiveConcurrencyLimit(int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency bounds: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = minLimit;
+        this.peakLimit = minLimit;
+    }
+
+    /**
+     * Waits until another operation may start and counts it as in flight.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= currentLimit()) {
+                changed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends an operation started with {@link #acquire()} and adapts the limit.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= currentLimit();
+            inFlight--;
+            record(latencyNanos, failed);
+
+            completionsSinceDecrease++;
+            if (failed || smoothedNanos > TOLERANCE * baselineNanos()) {
+                if (completionsSinceDecrease >= limit) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    completionsSinceDecrease = 0;
+                }
+            } else if (saturated) {
+                // Only grow while the current limit is actually the bottleneck
+                limit = Math.min(maxLimit, limit + 1 / limit);
+                peakLimit = Math.max(peakLimit, currentLimit());
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(long latencyNanos, boolean failed) {
+        operations++;
+        totalNanos += latencyNanos;
+        maxNanos = Math.max(maxNanos, latencyNanos);
+        limitSum += limit;
+        if (failed) {
+            failures++;
+        }
+
+        smoothedNanos = smoothedNanos == 0 ? latencyNanos : smoothedNanos + SMOOTHING * (latencyNanos - smoothedNanos);
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        if (++windowSamples == BASELINE_WINDOW) {
+            previousWindowMinNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    private long baselineNanos() {
+        return Math.min(windowMinNanos, previousWindowMinNanos);
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Waits until no operation is in flight.
+     */
+    public void awaitIdle() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight > 0) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Describes the limit the run settled at and the latency observed, e.g. for a
+     * summary printed at the end of a run.
+     */
+    public String describe() {
+        lock.lock();
+        try {
+            if (operations == 0) {
+                return String.format("I/O concurrency: %d (bounds %d-%d), no operations", currentLimit(), minLimit, maxLimit);
+            }
+            return String.format("I/O concurrency: settled at %d (bounds %d-%d, peak %d, mean %.1f); " +
+                            "%,d operations, latency mean %.3f ms, recent %.3f ms, max %.3f ms%s",
+                    currentLimit(), minLimit, maxLimit, peakLimit, limitSum / operations, operations,
+                    toMillis(totalNanos / (double) operations), toMillis(smoothedNanos), toMillis(maxNanos),
+                    failures == 0 ? "" : String.format(", %,d failed", failures));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
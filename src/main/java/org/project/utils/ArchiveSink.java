@@ -0,0 +1,75 @@
+package org.project.utils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Base class for sinks that stream entries into a single archive. Directory
+ * entries are emitted in tree order: before any entry is written, every
+ * ancestor directory that has not been emitted yet is written first.
+ *
+ * <p>Archives are append-only, so the first entry written for a path wins and
+ * later writes to the same path are reported as kept.</p>
+ *
+ * <p>Paths naming a parent directory ("..") are rejected, so an archive never holds
+ * entries that would be extracted outside of its target directory.</p>
+ */
+public abstract class ArchiveSink implements OutputSink {
+    private final Set<String> directories = new HashSet<>();
+    private final Set<String> files = new HashSet<>();
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        path = normalize(path);
+        if (path.isEmpty() || directories.contains(path)) {
+            return false;
+        }
+        ensureParents(path);
+        directories.add(path);
+        putDirectory(path + "/");
+        return true;
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        path = normalize(path);
+        if (files.contains(path)) {
+            return false;
+        }
+        ensureParents(path);
+        files.add(path);
+        putFile(path, content);
+        return true;
+    }
+
+    private void ensureParents(String path) throws IOException {
+        int slash = path.lastIndexOf('/');
+        if (slash > 0) {
+            createDirectory(path.substring(0, slash));
+        }
+    }
+
+    private static String normalize(String path) throws IOException {
+        String normalized = path.replace('\\', '/');
+        if (Arrays.asList(normalized.split("/")).contains("..")) {
+            throw new IOException("Path leaves the archive root: " + path);
+        }
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    /**
+     * Writes a directory entry; the name always ends with '/'.
+     */
+    protected abstract void putDirectory(String name) throws IOException;
+
+    protected abstract void putFile(String name, byte[] content) throws IOException;
+}
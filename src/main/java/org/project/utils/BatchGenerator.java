@@ -0,0 +1,305 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Generates many markdown specs in one JVM, so startup and JIT warm-up are paid once
+ * instead of once per spec. Specs run concurrently on a fixed pool, and all of their
+ * directory output goes through one shared {@link ParallelWriter.Pool}, so a single
+ * adaptive limit governs the writes of the whole batch.
+ *
+ * <p>The source is either a directory, whose *.md files are generated into
+ * {@code <output-root>/<spec name>}, or a list file with one spec per line, optionally
+ * followed by its own output directory or archive. Blank lines and lines starting with
+ * '#' are ignored.</p>
+ *
+ * <p>Each spec is generated by {@link GenericProjectStructureGenerator} or by
+ * {@link ProjectStructureGenerator}. By default a spec with "#### path" file headers is
+ * taken to be a {@link ProjectStructureGenerator} spec; --kind overrides that.</p>
+ */
+public class BatchGenerator {
+    private static final Pattern FILE_HEADER_PATTERN = Pattern.compile("^####\\s+\\S", Pattern.MULTILINE);
+
+    public enum Kind {
+        GENERIC, PROJECT, AUTO;
+
+        /**
+         * Resolves {@link #AUTO} from the spec content; other kinds are returned as is.
+         */
+        public Kind resolve(String content) {
+            if (this != AUTO) {
+                return this;
+            }
+            return FILE_HEADER_PATTERN.matcher(content).find() ? PROJECT : GENERIC;
+        }
+    }
+
+    public record Job(Path spec, String target, Kind kind) {
+    }
+
+    public record Result(Job job, long items, long nanos, Exception failure) {
+        public boolean failed() {
+            return failure != null;
+        }
+    }
+
+    public static void main(String[] args) {
+        GenerationOptions options;
+        Kind kind = Kind.AUTO;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            // Batch options are taken out before the shared generation options are parsed
+            List<String> generationArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--kind=")) {
+                    kind = parseKind(arg.substring("--kind=".length()));
+                } else if (arg.startsWith("--jobs=")) {
+                    threads = parseJobs(arg.substring("--jobs=".length()));
+                } else {
+                    generationArgs.add(arg);
+                }
+            }
+            options = GenerationOptions.parse(generationArgs.toArray(new String[0])).rejectWatch("BatchGenerator");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            options = null;
+        }
+
+        if (options == null || options.getArguments().isEmpty() || options.getArguments().size() > 2) {
+            System.out.println("Usage: java BatchGenerator [options] <spec-directory|list-file> [output-root]");
+            System.out.println("Example: java BatchGenerator specs/ ./generated");
+            System.out.println("Example: java BatchGenerator --jobs=8 specs.txt");
+            System.out.println("Batch options:");
+            System.out.println("  --jobs=N    number of specs generated at the same time (default: number of cores)");
+            System.out.println("  --kind=auto|generic|project");
+            System.out.println("              generator to use; auto picks the project generator for specs");
+            System.out.println("              with \"#### path\" file headers (default auto)");
+            System.out.print(GenerationOptions.usage());
+            System.exit(1);
+        }
+
+        Path source = Paths.get(options.getArguments().get(0));
+        Path outputRoot = Paths.get(options.getArguments().size() > 1 ? options.getArguments().get(1) : ".");
+        try {
+            List<Job> jobs = readJobs(source, outputRoot, kind);
+            List<Result> results = generate(jobs, options, threads);
+            if (results.stream().anyMatch(Result::failed)) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static Kind parseKind(String value) {
+        try {
+            return Kind.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Option --kind expects auto, generic or project but got: " + value);
+        }
+    }
+
+    static int parseJobs(String value) {
+        try {
+            int jobs = Integer.parseInt(value);
+            if (jobs >= 1) {
+                return jobs;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Option --jobs expects a positive number but got: " + value);
+    }
+
+    /**
+     * Reads the jobs of a spec directory or list file. Specs without an explicit output
+     * target are generated into a directory named after the spec below the output root.
+     */
+    public static List<Job> readJobs(Path source, Path outputRoot, Kind kind) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".md") && Files.isRegularFile(file))
+                        .sorted()
+                        .forEach(spec -> jobs.add(new Job(spec, defaultTarget(spec, outputRoot), kind)));
+            }
+            return jobs;
+        }
+
+        for (String line : Files.readAllLines(source)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+", 2);
+            Path spec = Paths.get(fields[0]);
+            jobs.add(new Job(spec, fields.length > 1 ? fields[1] : defaultTarget(spec, outputRoot), kind));
+        }
+        return jobs;
+    }
+
+    private static String defaultTarget(Path spec, Path outputRoot) {
+        String name = spec.getFileName().toString();
+        return outputRoot.resolve(name.endsWith(".md") ? name.substring(0, name.length() - 3) : name).toString();
+    }
+
+    /**
+     * Generates every job on a pool of the given size and prints a line per spec as it
+     * finishes, followed by an aggregate report.
+     *
+     * @return the results in job order
+     */
+    public static List<Result> generate(List<Job> jobs, GenerationOptions options, int threads) {
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>(Collections.nCopies(jobs.size(), null));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try (ProgressReporter reporter = new ProgressReporter(options.getReportLevel());
+             ParallelWriter.Pool pool = new ParallelWriter.Pool(options)) {
+            CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < jobs.size(); i++) {
+                int index = i;
+                completion.submit(() -> {
+                    results.set(index, generate(jobs.get(index), options, pool));
+                    return index;
+                });
+            }
+
+            for (int done = 1; done <= jobs.size(); done++) {
+                Result result = results.get(completion.take().get());
+                String position = "[" + done + "/" + jobs.size() + "] ";
+                if (result.failed()) {
+                    reporter.warn(position + "Failed: " + result.job().spec() + ": " + describe(result.failure()));
+                } else {
+                    reporter.info(String.format("%s%s -> %s: %,d items in %.2f s", position, result.job().spec(),
+                            result.job().target(), result.items(), result.nanos() / 1e9));
+                }
+            }
+
+            report(results, System.nanoTime() - start, pool, reporter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // generate(Job, ...) reports failures in its result
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static Result generate(Job job, GenerationOptions options, ParallelWriter.Pool pool) {
+        long start = System.nanoTime();
+        try {
+            String content = Files.readString(job.spec());
+            Kind kind = job.kind().resolve(content);
+
+            // Per-spec output would interleave across specs; only counts and warnings are kept
+            try (ProgressReporter reporter = new ProgressReporter(ProgressReporter.Level.QUIET);
+                 OutputSink sink = OutputSink.open(job.target(), kind == Kind.PROJECT, options,
+                         kind == Kind.GENERIC ? StagedDirectorySink.Scope.DIRECTORY : StagedDirectorySink.Scope.ENTRIES)) {
+                JavaCompileCheck.SourceCapture sources = options.isVerifyJava() ?
+                        new JavaCompileCheck.SourceCapture(sink) : null;
+                try (ParallelWriter writer = new ParallelWriter(sources != null ? sources : sink, pool)) {
+                    generateSpec(content, kind, writer, reporter, options.isDeterministic(), options.getPipeline(),
+                            options.getPathFilter());
+                }
+                sink.commit();
+                if (sources != null) {
+                    JavaCompileCheck.verify(sources, options, reporter);
+                }
+                return new Result(job, reporter.getItemCount(), System.nanoTime() - start, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            return new Result(job, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Generates a single spec through the writer with the generator for its kind. The
+     * writer's sink is left uncommitted.
+     */
+    public static void generateSpec(String content, Kind kind, ParallelWriter writer, ProgressReporter reporter)
+            throws IOException {
+        generateSpec(content, kind, writer, reporter, false);
+    }
+
+    /**
+     * @param sorted whether generic specs are generated in name order, see
+     *               {@link GenericProjectStructureGenerator#generateProjectStructure(List, ParallelWriter, ProgressReporter, boolean)}
+     */
+    public static void generateSpec(String content, Kind kind, ParallelWriter writer, ProgressReporter reporter,
+                                    boolean sorted) throws IOException {
+        generateSpec(content, kind, writer, reporter, sorted, null);
+    }
+
+    /**
+     * @param pipeline stage settings to generate the spec through a {@link GenerationPipeline},
+     *                 or null to generate it sequentially
+     */
+    public static void generateSpec(String content, Kind kind, ParallelWriter writer, ProgressReporter reporter,
+                                    boolean sorted, GenerationPipeline.Settings pipeline) throws IOException {
+        generateSpec(content, kind, writer, reporter, sorted, pipeline, PathFilter.ALL);
+    }
+
+    /**
+     * @param filter the part of the spec to generate
+     */
+    public static void generateSpec(String content, Kind kind, ParallelWriter writer, ProgressReporter reporter,
+                                    boolean sorted, GenerationPipeline.Settings pipeline, PathFilter filter)
+            throws IOException {
+        if (kind.resolve(content) == Kind.PROJECT) {
+            new ProjectStructureGenerator().generateProject(content, writer, reporter, pipeline, filter);
+        } else {
+            GenericProjectStructureGenerator.generateProjectStructure(content.lines().toList(), writer, reporter,
+                    sorted, pipeline, filter);
+        }
+    }
+
+    /**
+     * Renders a spec into memory, recording every directory and file it generates.
+     */
+    public static CapturingSink renderSpec(String content, Kind kind) throws IOException {
+        CapturingSink capture = new CapturingSink(kind.resolve(content) == Kind.PROJECT);
+        try (ProgressReporter quiet = new ProgressReporter(ProgressReporter.Level.QUIET);
+             ParallelWriter writer = new ParallelWriter(capture, new GenerationOptions())) {
+            generateSpec(content, kind, writer, quiet);
+        }
+        return capture;
+    }
+
+    static String describe(Exception failure) {
+        // These only carry the path, which reads like no explanation at all
+        if (failure instanceof NoSuchFileException) {
+            return "No such file: " + failure.getMessage();
+        } else if (failure instanceof FileAlreadyExistsException) {
+            return "File already exists: " + failure.getMessage();
+        }
+        return failure.getMessage();
+    }
+
+    private static void report(List<Result> results, long nanos, ParallelWriter.Pool pool, ProgressReporter reporter) {
+        long items = 0;
+        long slowest = 0;
+        int failed = 0;
+        for (Result result : results) {
+            items += result.items();
+            slowest = Math.max(slowest, result.nanos());
+            if (result.failed()) {
+                failed++;
+            }
+        }
+
+        double seconds = nanos / 1e9;
+        reporter.info(String.format("Batch completed: %,d specs (%,d failed), %,d items in %.2f s (%,d items/s, " +
+                        "slowest spec %.2f s)", results.size(), failed, items, seconds,
+                seconds > 0 ? Math.round(items / seconds) : 0, slowest / 1e9));
+        reporter.info(pool.getLimit().describe());
+    }
+}
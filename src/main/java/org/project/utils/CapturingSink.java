@@ -0,0 +1,68 @@
+package org.project.utils;
+
+import java.util.*;
+
+/**
+ * Keeps a generated tree in memory instead of writing it anywhere, so two renders of a
+ * spec can be compared entry by entry. Like a directory, it records the ancestors of
+ * every entry as directories.
+ */
+public class CapturingSink implements OutputSink {
+    private final boolean overwrite;
+    private final Set<String> directories = new LinkedHashSet<>();
+    private final Map<String, byte[]> files = new LinkedHashMap<>();
+
+    /**
+     * @param overwrite whether a later write to the same path replaces the earlier one,
+     *                  as it would in a {@link DirectorySink} with the same setting
+     */
+    public CapturingSink(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    @Override
+    public boolean createDirectory(String path) {
+        if (path.isEmpty() || directories.contains(path)) {
+            return false;
+        }
+        addParents(path);
+        directories.add(path);
+        return true;
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) {
+        if (files.containsKey(path) && !overwrite) {
+            return false;
+        }
+        addParents(path);
+        files.put(path, content);
+        return true;
+    }
+
+    private void addParents(String path) {
+        int slash = path.lastIndexOf('/');
+        if (slash > 0) {
+            createDirectory(path.substring(0, slash));
+        }
+    }
+
+    /**
+     * Directories in the order they were first created, parents before children.
+     */
+    public Set<String> getDirectories() {
+        return directories;
+    }
+
+    /**
+     * File contents by path, in the order the files were first written.
+     */
+    public Map<String, byte[]> getFiles() {
+        return files;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release; the captured tree stays readable
+    }
+}
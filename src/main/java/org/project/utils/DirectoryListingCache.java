@@ -0,0 +1,112 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers existence checks from directory listings instead of one stat per path.
+ * Each directory is listed once, on the first check below it, and its names are kept
+ * in a hash set that {@link #created} keeps up to date. A directory the cache saw
+ * being created starts out empty and is never listed.
+ *
+ * <p>The cache only knows about changes made through it. Names are compared exactly,
+ * so on case-insensitive file systems a differently cased existing entry is reported
+ * as missing; creating it then fails or finds it, as it would without the cache.</p>
+ *
+ * <p>Safe for concurrent use.</p>
+ */
+public class DirectoryListingCache {
+    private final Map<Path, Set<String>> listings = new ConcurrentHashMap<>();
+    private final Set<Path> notDirectories = ConcurrentHashMap.newKeySet();
+    private final AtomicLong listed = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    public boolean exists(Path path) {
+        Path parent = path.getParent();
+        if (parent == null) {
+            return Files.exists(path);
+        }
+        lookups.incrementAndGet();
+        return listing(parent).contains(path.getFileName().toString());
+    }
+
+    /**
+     * Whether an existing entry is a directory, found by listing it; the listing then
+     * answers the checks below it.
+     */
+    public boolean isDirectory(Path path) {
+        listing(path);
+        return !notDirectories.contains(path) && exists(path);
+    }
+
+    /**
+     * The names in a directory, listing it if that has not happened yet. The set is
+     * live and must not be changed.
+     */
+    public Set<String> names(Path dir) {
+        return listing(dir);
+    }
+
+    /**
+     * Records a file or directory created below an existing or recorded directory.
+     */
+    public void created(Path path, boolean directory) {
+        if (directory) {
+            // Anything in it was created after this call, so there is nothing to list
+            listings.computeIfAbsent(path, dir -> ConcurrentHashMap.newKeySet());
+        }
+        Path parent = path.getParent();
+        if (parent != null) {
+            listing(parent).add(path.getFileName().toString());
+        }
+    }
+
+    /**
+     * Records a deleted file or empty directory.
+     */
+    public void deleted(Path path) {
+        listings.remove(path);
+        notDirectories.remove(path);
+        Path parent = path.getParent();
+        if (parent != null) {
+            Set<String> names = listings.get(parent);
+            if (names != null) {
+                names.remove(path.getFileName().toString());
+            }
+        }
+    }
+
+    private Set<String> listing(Path dir) {
+        return listings.computeIfAbsent(dir, this::list);
+    }
+
+    private Set<String> list(Path dir) {
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                names.add(entry.getFileName().toString());
+            }
+            listed.incrementAndGet();
+        } catch (NotDirectoryException e) {
+            notDirectories.add(dir);
+        } catch (NoSuchFileException e) {
+            // Nothing exists below it; entries are added as they are created
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list " + dir, e);
+        }
+        return names;
+    }
+
+    public long getListedDirectories() {
+        return listed.get();
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+}
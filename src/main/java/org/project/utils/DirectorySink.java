@@ -0,0 +1,502 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes generated entries below a root directory. The root may live on any
+ * {@link FileSystem}; only {@link Files} operations are used.
+ *
+ * <p>How far written entries are synced to storage is set by a {@link Durability}.
+ * Syncing only applies to the default file system; elsewhere, e.g. in memory, every
+ * policy behaves like {@link Durability#NONE}.</p>
+ *
+ * <p>With hard links enabled, each distinct content is written once and later files
+ * with the same bytes become hard links to that first file. Where a link cannot be
+ * created, e.g. across file systems, the file is written normally. A file that is
+ * replaced while it shares its content with other names is deleted first, so the
+ * other names keep their content.</p>
+ *
+ * <p>With the listing cache enabled, existence checks are answered from one listing
+ * per directory, see {@link DirectoryListingCache}, instead of a stat per entry.</p>
+ *
+ * <p>With a fixed time set, every written file gets that modification time as it is
+ * written, and every directory that was created or gained an entry gets it on
+ * {@link #commit()}, once nothing changes it any more.</p>
+ */
+public class DirectorySink implements OutputSink {
+    private static final Set<OpenOption> REPLACE = Set.of(StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    private static final Set<OpenOption> CREATE_NEW = Set.of(StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE);
+
+    public enum Durability {
+        /**
+         * Nothing is synced; the operating system writes entries back when it sees fit.
+         */
+        NONE,
+        /**
+         * Every written file and every directory that gained an entry is synced once, on
+         * {@link #commit()}, after all writes are done.
+         */
+        BATCHED,
+        /**
+         * Every file and the directory holding it are synced before the write returns.
+         */
+        PER_FILE
+    }
+
+    private final Path root;
+    private final boolean overwrite;
+    private final Durability durability;
+
+    // Pending syncs for BATCHED
+    private final Queue<Path> unsyncedFiles = new ConcurrentLinkedQueue<>();
+    private final Set<Path> unsyncedDirectories = ConcurrentHashMap.newKeySet();
+
+    // Hard links: the first file written for each content, by digest so the map does not
+    // hold on to every distinct content, and the reverse mapping so a replaced file stops
+    // serving as link source
+    private volatile boolean hardLinks;
+    private final Map<ContentKey, Path> linkSources = new ConcurrentHashMap<>();
+    private final Map<Path, ContentKey> sourceContents = new ConcurrentHashMap<>();
+    private final AtomicLong linkedFiles = new AtomicLong();
+    private final AtomicLong linkedBytes = new AtomicLong();
+
+    private volatile DirectoryListingCache listings;
+
+    private volatile FileTime fixedTime;
+    private final Set<Path> retimedDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param overwrite whether existing files are replaced (true) or kept (false)
+     */
+    public DirectorySink(Path root, boolean overwrite) throws IOException {
+        this(root, overwrite, Durability.NONE);
+    }
+
+    public DirectorySink(Path root, boolean overwrite, Durability durability) throws IOException {
+        this(root, overwrite, durability, false);
+    }
+
+    /**
+     * @param listingCache whether the listing cache starts enabled, for subclasses that
+     *                     need it from the start, see {@link #setListingCache}
+     */
+    protected DirectorySink(Path root, boolean overwrite, Durability durability, boolean listingCache)
+            throws IOException {
+        // Absolute, so the paths entries are resolved to and the levels created for them
+        // are the same keys in the listing cache
+        this.root = root.toAbsolutePath();
+        this.overwrite = overwrite;
+        this.durability = root.getFileSystem() == FileSystems.getDefault() ? durability : Durability.NONE;
+        this.listings = listingCache ? new DirectoryListingCache() : null;
+
+        // Create base directory if it doesn't exist
+        if (!Files.exists(this.root)) {
+            createRoot();
+        }
+    }
+
+    /**
+     * Creates the root and any missing parents like {@link #createDirectories} would,
+     * without calling methods a subclass can override before it is initialized. The
+     * listing cache and fixed time cannot be set yet, so only durability applies.
+     */
+    private void createRoot() throws IOException {
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path level = root; level != null && !Files.exists(level); level = level.getParent()) {
+            missing.push(level);
+        }
+        Files.createDirectories(root);
+        for (Path level : missing) {
+            if (level.getParent() != null) {
+                syncChanged(level.getParent());
+            }
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path resolve(String path) {
+        return root.resolve(path);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Makes files whose content was already written by this sink hard links to the
+     * first such file instead of copies.
+     */
+    public DirectorySink setHardLinks(boolean hardLinks) {
+        this.hardLinks = hardLinks;
+        return this;
+    }
+
+    public boolean isHardLinks() {
+        return hardLinks;
+    }
+
+    /**
+     * Answers existence checks from cached directory listings. Only worth it when
+     * generating into a directory that already holds many of the entries; into a new
+     * directory nothing needs to be listed either way.
+     */
+    public DirectorySink setListingCache(boolean enabled) {
+        this.listings = enabled ? new DirectoryListingCache() : null;
+        return this;
+    }
+
+    /**
+     * Gives every generated file and directory this modification time, or the time it
+     * was written if null.
+     */
+    public DirectorySink setFixedTime(FileTime fixedTime) {
+        this.fixedTime = fixedTime;
+        return this;
+    }
+
+    public FileTime getFixedTime() {
+        return fixedTime;
+    }
+
+    public boolean isListingCache() {
+        return listings != null;
+    }
+
+    protected DirectoryListingCache getListingCache() {
+        return listings;
+    }
+
+    protected boolean exists(Path path) {
+        DirectoryListingCache cache = listings;
+        return cache != null ? cache.exists(path) : Files.exists(path);
+    }
+
+    private void entryCreated(Path path, boolean directory) {
+        DirectoryListingCache cache = listings;
+        if (cache != null) {
+            cache.created(path, directory);
+        }
+    }
+
+    private void entryDeleted(Path path) {
+        DirectoryListingCache cache = listings;
+        if (cache != null) {
+            cache.deleted(path);
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        Path dir = resolve(path);
+        if (exists(dir)) {
+            return false;
+        }
+        createDirectories(dir);
+        return true;
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        Path file = resolve(path);
+        createParentDirectories(file);
+        return write(file, content, overwrite);
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    protected void createParentDirectories(Path file) throws IOException {
+        // Create parent directories if they don't exist
+        Path parentDir = file.getParent();
+        if (parentDir != null && !exists(parentDir)) {
+            createDirectories(parentDir);
+        }
+    }
+
+    /**
+     * Creates the directory and any missing parents. Unless durability is off, the
+     * parent of every new level is synced now or recorded for the batch, since that is
+     * where the new entry lives. New levels are recorded in the listing cache.
+     */
+    protected void createDirectories(Path dir) throws IOException {
+        if (durability == Durability.NONE && listings == null && fixedTime == null) {
+            Files.createDirectories(dir);
+            return;
+        }
+
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path level = dir.toAbsolutePath(); level != null && !exists(level); level = level.getParent()) {
+            missing.push(level);
+        }
+        Files.createDirectories(dir);
+        for (Path level : missing) {
+            entryCreated(level, true);
+            if (fixedTime != null) {
+                retimedDirectories.add(level);
+            }
+            directoryChanged(level.getParent());
+        }
+    }
+
+    /**
+     * Writes the content, replacing an existing file only if {@code replace} is set.
+     *
+     * @return false if an existing file was kept
+     */
+    protected boolean write(Path file, byte[] content, boolean replace) throws IOException {
+        if (replace) {
+            ContentKey previous = sourceContents.remove(file);
+            if (previous != null) {
+                linkSources.remove(previous, file);
+            }
+            // The cache saves the attribute lookup for files that do not exist yet
+            if ((listings == null || exists(file)) && isSharedLink(file)) {
+                // Writing through the link would change every other name as well
+                Files.delete(file);
+                entryDeleted(file);
+            }
+        } else if (listings != null && exists(file)) {
+            // Kept without trying to create it
+            return false;
+        }
+
+        if (hardLinks) {
+            ContentKey key = new ContentKey(GenerationManifest.hash(content), content.length);
+            Path source = linkSources.get(key);
+            if (source != null && hasContent(source, content)) {
+                Boolean linked = link(file, source, content.length, replace);
+                if (linked != null) {
+                    return linked;
+                }
+            } else if (source != null) {
+                // Same digest but other bytes, or the source was changed since
+                return writeContent(file, content, replace);
+            } else if (writeContent(file, content, replace)) {
+                if (linkSources.putIfAbsent(key, file) == null) {
+                    sourceContents.put(file, key);
+                }
+                return true;
+            } else {
+                return false;
+            }
+        }
+        return writeContent(file, content, replace);
+    }
+
+    /**
+     * Links the file to a source with the same content.
+     *
+     * @return whether the link was created or an existing file kept, or null if the
+     * file system could not create it and the content has to be written instead
+     */
+    private Boolean link(Path file, Path source, long size, boolean replace) throws IOException {
+        try {
+            if (replace) {
+                Files.deleteIfExists(file);
+            }
+            Files.createLink(file, source);
+        } catch (FileAlreadyExistsException e) {
+            if (replace) {
+                // Created concurrently by another writer; write over it like a plain write would
+                return null;
+            }
+            return false;
+        } catch (UnsupportedOperationException e) {
+            // No hard links on this file system at all
+            hardLinks = false;
+            return null;
+        } catch (FileSystemException e) {
+            // E.g. a mount point between file and source, or the link limit was reached
+            return null;
+        }
+
+        linkedFiles.incrementAndGet();
+        linkedBytes.addAndGet(size);
+        entryCreated(file, false);
+        directoryChanged(file.getParent());
+        return true;
+    }
+
+    // The SHA-256 digest of a content, as hex, and its length
+    private record ContentKey(String digest, int length) {
+    }
+
+    private static boolean hasContent(Path source, byte[] content) throws IOException {
+        try {
+            return Files.size(source) == content.length && Arrays.equals(Files.readAllBytes(source), content);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static boolean isSharedLink(Path file) throws IOException {
+        if (!file.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            return false;
+        }
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS) > 1;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private boolean writeContent(Path file, byte[] content, boolean replace) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file, replace ? REPLACE : CREATE_NEW)) {
+            ByteBuffer buffer = StubTemplates.bufferFor(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fixedTime != null) {
+                Files.setLastModifiedTime(file, fixedTime);
+            }
+            if (durability == Durability.PER_FILE) {
+                ((FileChannel) channel).force(true);
+            }
+        } catch (FileAlreadyExistsException e) {
+            if (replace) {
+                throw e;
+            }
+            return false;
+        }
+
+        if (durability == Durability.BATCHED) {
+            unsyncedFiles.add(file);
+        }
+        entryCreated(file, false);
+        directoryChanged(file.getParent());
+        return true;
+    }
+
+    /**
+     * Syncs a file written outside of {@link #write}, or records it for the batch,
+     * according to the durability.
+     */
+    protected void fileChanged(Path file) throws IOException {
+        if (fixedTime != null) {
+            Files.setLastModifiedTime(file, fixedTime);
+        }
+        if (durability == Durability.PER_FILE) {
+            syncFile(file);
+        } else if (durability == Durability.BATCHED) {
+            unsyncedFiles.add(file);
+        }
+        directoryChanged(file.getParent());
+    }
+
+    /**
+     * Syncs a directory that gained, lost or renamed an entry, or records it for the
+     * batch, according to the durability.
+     */
+    protected void directoryChanged(Path dir) throws IOException {
+        if (dir == null) {
+            return;
+        }
+        if (fixedTime != null) {
+            retimedDirectories.add(dir);
+        }
+        syncChanged(dir);
+    }
+
+    private void syncChanged(Path dir) throws IOException {
+        if (durability == Durability.PER_FILE) {
+            syncDirectory(dir);
+        } else if (durability == Durability.BATCHED) {
+            unsyncedDirectories.add(dir);
+        }
+    }
+
+    /**
+     * Sets the fixed time on the recorded directories, then syncs everything recorded
+     * for {@link Durability#BATCHED}: first the files, in parallel so the device can
+     * merge the flushes, then the directories.
+     */
+    @Override
+    public void commit() throws IOException {
+        FileTime time = fixedTime;
+        if (time != null) {
+            List<Path> directories = new ArrayList<>(retimedDirectories);
+            retimedDirectories.clear();
+            for (Path dir : directories) {
+                Files.setLastModifiedTime(dir, time);
+            }
+        }
+
+        if (durability != Durability.BATCHED) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Path file; (file = unsyncedFiles.poll()) != null; ) {
+            files.add(file);
+        }
+        try {
+            files.parallelStream().forEach(file -> {
+                try {
+                    syncFile(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Path> directories = new ArrayList<>(unsyncedDirectories);
+        unsyncedDirectories.clear();
+        for (Path dir : directories) {
+            syncDirectory(dir);
+        }
+    }
+
+    private static void syncFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Some platforms, Windows among them, cannot open a directory for syncing
+        }
+    }
+
+    @Override
+    public void report(ProgressReporter reporter) {
+        DirectoryListingCache cache = listings;
+        if (cache != null) {
+            reporter.info(String.format("Listing cache: %,d existence checks answered from %,d directory listings",
+                    cache.getLookups(), cache.getListedDirectories()));
+        }
+        if (linkedFiles.get() > 0) {
+            reporter.info(String.format("Hard links: %,d files linked to identical content, %,d bytes not written",
+                    linkedFiles.get(), linkedBytes.get()));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Nothing is buffered; every entry is on disk once its call returns
+    }
+}
@@ -0,0 +1,40 @@
+package org.project.utils;
+
+import java.io.IOException;
+
+/**
+ * An entry of a generation run reaching its output, as published by a
+ * {@link PublishingSink}. Paths are relative to the output root and use '/' as
+ * separator, like the paths handed to an {@link OutputSink}.
+ *
+ * @param bytes   content length of a file, 0 for a directory
+ * @param failure why the entry could not be written; only set for {@link Type#FAILED}
+ */
+public record GenerationEvent(Type type, String path, boolean directory, long bytes, IOException failure) {
+
+    public enum Type {
+        DIRECTORY_CREATED,
+        FILE_WRITTEN,
+        /**
+         * The entry already existed and the sink kept it.
+         */
+        SKIPPED,
+        FAILED
+    }
+
+    public static GenerationEvent directoryCreated(String path) {
+        return new GenerationEvent(Type.DIRECTORY_CREATED, path, true, 0, null);
+    }
+
+    public static GenerationEvent fileWritten(String path, long bytes) {
+        return new GenerationEvent(Type.FILE_WRITTEN, path, false, bytes, null);
+    }
+
+    public static GenerationEvent skipped(String path, boolean directory, long bytes) {
+        return new GenerationEvent(Type.SKIPPED, path, directory, bytes, null);
+    }
+
+    public static GenerationEvent failed(String path, boolean directory, long bytes, IOException failure) {
+        return new GenerationEvent(Type.FAILED, path, directory, bytes, failure);
+    }
+}
@@ -0,0 +1,249 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Checkpoint journal of a generation run, kept in the output root while the run is
+ * in progress. Every completed operation is appended as one line: "F size crc path"
+ * for a written file, "K path" for an existing file that was kept and "D path" for a
+ * created directory. Lines are buffered and flushed every {@value #FLUSH_ENTRIES}
+ * entries or once a second, so a killed run loses at most the last few.
+ *
+ * <p>When a run is started on an output directory that still holds the journal of an
+ * interrupted run, the entries are loaded and the last {@value #VERIFY_TAIL} written
+ * files are checked against their recorded size and checksum. Entries that fail the
+ * check are dropped so the files are written again.</p>
+ */
+public class GenerationJournal implements Closeable {
+    public static final String FILE_NAME = ".generator-journal";
+    private static final String HEADER = "# generator-journal v1 ";
+    static final int VERIFY_TAIL = 64;
+    private static final int FLUSH_ENTRIES = 1024;
+    private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Entry KEPT = new Entry(-1, 0);
+    private static final Entry DIRECTORY = new Entry(-2, 0);
+
+    private record Entry(long size, long checksum) {
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long startedMillis;
+    private final boolean resumed;
+    private final Deque<String> lastWritten = new ArrayDeque<>();
+    private int verified;
+    private int failed;
+
+    private final BufferedWriter writer;
+    private int unflushed;
+    private long lastFlush = System.nanoTime();
+
+    private GenerationJournal(Path root) throws IOException {
+        this.file = root.resolve(FILE_NAME);
+        this.resumed = Files.exists(file);
+
+        long started = System.currentTimeMillis();
+        if (resumed) {
+            started = load();
+            verifyTail(root);
+            terminateLastLine();
+        }
+        this.startedMillis = started;
+
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        if (!resumed) {
+            writer.write(HEADER + startedMillis);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Opens the journal in the output root, loading the entries of an interrupted run
+     * if its journal is still there.
+     */
+    public static GenerationJournal open(Path root) throws IOException {
+        return new GenerationJournal(root);
+    }
+
+    /**
+     * Loads the entries and returns the start time of the interrupted run. A line cut
+     * short by the interruption is ignored.
+     */
+    private long load() throws IOException {
+        long started = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(HEADER)) {
+                    try {
+                        started = Long.parseLong(line.substring(HEADER.length()));
+                    } catch (NumberFormatException e) {
+                        // Torn header; the current time is the safe choice
+                    }
+                } else if (line.startsWith("F ")) {
+                    String[] parts = line.split(" ", 4);
+                    if (parts.length == 4) {
+                        try {
+                            entries.put(parts[3], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2], 16)));
+                            lastWritten.addLast(parts[3]);
+                            if (lastWritten.size() > VERIFY_TAIL) {
+                                lastWritten.removeFirst();
+                            }
+                        } catch (NumberFormatException e) {
+                            // Torn line
+                        }
+                    }
+                } else if (line.startsWith("K ")) {
+                    entries.put(line.substring(2), KEPT);
+                } else if (line.startsWith("D ")) {
+                    entries.put(line.substring(2), DIRECTORY);
+                }
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Checks the files written last, the ones most likely to be incomplete if the
+     * machine went down rather than just the process.
+     */
+    private void verifyTail(Path root) throws IOException {
+        for (String path : lastWritten) {
+            Entry entry = entries.get(path);
+            if (entry == null || entry.size() < 0) {
+                continue;
+            }
+            byte[] content;
+            try {
+                content = Files.readAllBytes(root.resolve(path));
+            } catch (NoSuchFileException e) {
+                content = null;
+            }
+            if (content != null && content.length == entry.size() && checksum(content) == entry.checksum()) {
+                verified++;
+            } else {
+                entries.remove(path);
+                failed++;
+            }
+        }
+        lastWritten.clear();
+    }
+
+    /**
+     * Ends a line cut short by the interruption, so appended entries start on a line of
+     * their own.
+     */
+    private void terminateLastLine() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(size - 1).read(last);
+            if (last.get(0) != '\n') {
+                channel.position(size).write(ByteBuffer.wrap(new byte[]{'\n'}));
+            }
+        }
+    }
+
+    public static long checksum(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    /**
+     * Whether the file was written with this content, or kept, by this or an
+     * interrupted run.
+     */
+    public boolean isDone(String path, long size, long checksum) {
+        Entry entry = entries.get(path);
+        return entry == KEPT || (entry != null && entry.size() == size && entry.checksum() == checksum);
+    }
+
+    public boolean isDirectoryDone(String path) {
+        return entries.get(path) == DIRECTORY;
+    }
+
+    /**
+     * Whether an existing file the journal does not know about was last modified after
+     * the interrupted run started, i.e. was most likely being written when it stopped.
+     */
+    public boolean isFromInterruptedRun(String path, Path file) throws IOException {
+        if (!resumed || entries.containsKey(path)) {
+            return false;
+        }
+        try {
+            return Files.getLastModifiedTime(file).toMillis() >= startedMillis;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    public void fileWritten(String path, long size, long checksum) throws IOException {
+        entries.put(path, new Entry(size, checksum));
+        append("F " + size + " " + Long.toHexString(checksum) + " " + path);
+    }
+
+    public void fileKept(String path) throws IOException {
+        entries.put(path, KEPT);
+        append("K " + path);
+    }
+
+    public void directoryCreated(String path) throws IOException {
+        entries.put(path, DIRECTORY);
+        append("D " + path);
+    }
+
+    private synchronized void append(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        long now = System.nanoTime();
+        if (++unflushed >= FLUSH_ENTRIES || now - lastFlush >= FLUSH_INTERVAL) {
+            writer.flush();
+            unflushed = 0;
+            lastFlush = now;
+        }
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public int getVerifiedCount() {
+        return verified;
+    }
+
+    public int getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * Removes the journal once the run has completed; there is nothing left to resume.
+     */
+    public synchronized void complete() throws IOException {
+        writer.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Flushes pending entries and keeps the journal for a later run to resume from.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
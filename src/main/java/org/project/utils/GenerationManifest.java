@@ -0,0 +1,93 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the path, size and SHA-256 content hash of every generated file. The
+ * manifest is a text file with one "hash size path" line per file, kept in the
+ * output root so a later run can tell which files actually changed.
+ */
+public class GenerationManifest {
+    public static final String FILE_NAME = ".generator-manifest";
+    private static final String HEADER = "# generator-manifest v1";
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public record Entry(String hash, long size) {
+    }
+
+    /**
+     * Loads the manifest from the output root, or returns an empty one if there is none.
+     */
+    public static GenerationManifest load(Path root) throws IOException {
+        GenerationManifest manifest = new GenerationManifest();
+        Path file = root.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return manifest;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) {
+                    throw new IOException("Malformed manifest line in " + file + ": " + line);
+                }
+                manifest.entries.put(parts[2], new Entry(parts[0], Long.parseLong(parts[1])));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to a temporary file and moves it into place, so an
+     * interrupted save never leaves a truncated manifest behind.
+     */
+    public void save(Path root) throws IOException {
+        Path file = root.resolve(FILE_NAME);
+        Path temp = root.resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                writer.write(entry.getValue().hash() + " " + entry.getValue().size() + " " + entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public void put(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    public Set<String> paths() {
+        return entries.keySet();
+    }
+
+    public static String hash(byte[] content) {
+        MessageDigest digest = SHA_256.get();
+        return HexFormat.of().formatHex(digest.digest(content));
+    }
+}
@@ -0,0 +1,459 @@
+package org.project.utils;
+
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+/**
+ * Command line options shared by the generators. Options start with "--" and may
+ * appear anywhere; everything else is kept as a positional argument.
+ */
+public class GenerationOptions {
+    private static final int DEFAULT_IO_MAX = 16;
+    // 1980-02-01T00:00:00Z; zip entries cannot hold anything before 1980
+    private static final long DEFAULT_FIXED_TIME = 318211200L;
+
+    private final List<String> arguments = new ArrayList<>();
+    private boolean atomic;
+    private boolean incremental;
+    private boolean resume;
+    private boolean watch;
+    private List<String> sync;
+    private PathFilter pathFilter = PathFilter.ALL;
+    private boolean hardLinks;
+    private boolean listDirectories;
+    private boolean deterministic;
+    private boolean verifyJava;
+    private String verifyClassPath;
+    private GenerationPipeline.Settings pipeline;
+    private DirectorySink.Durability durability = DirectorySink.Durability.NONE;
+    private ProgressReporter.Level reportLevel = ProgressReporter.Level.VERBOSE;
+    private int ioMin = 1;
+    private int ioMax = DEFAULT_IO_MAX;
+
+    public static GenerationOptions parse(String[] args) {
+        GenerationOptions options = new GenerationOptions();
+        Integer pipelineQueue = null;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                options.arguments.add(arg);
+                continue;
+            }
+
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg.substring(2) : arg.substring(2, equals);
+            String value = equals < 0 ? null : arg.substring(equals + 1);
+            switch (name) {
+                case "atomic" -> options.atomic = parseFlag(name, value);
+                case "incremental" -> options.incremental = parseFlag(name, value);
+                case "resume" -> options.resume = parseFlag(name, value);
+                case "watch" -> options.watch = parseFlag(name, value);
+                case "sync" -> options.sync = parseSync(name, value);
+                case "include" -> includes.addAll(parsePatterns(name, value));
+                case "exclude" -> excludes.addAll(parsePatterns(name, value));
+                case "quiet" -> options.reportLevel = parseLevel(name, value, ProgressReporter.Level.QUIET);
+                case "summary" -> options.reportLevel = parseLevel(name, value, ProgressReporter.Level.SUMMARY);
+                case "verbose" -> options.reportLevel = parseLevel(name, value, ProgressReporter.Level.VERBOSE);
+                case "hard-links" -> options.hardLinks = parseFlag(name, value);
+                case "verify-java" -> options.verifyJava = parseFlag(name, value);
+                case "verify-classpath" -> {
+                    if (value == null || value.isEmpty()) {
+                        throw new IllegalArgumentException("Option --" + name + " expects a class path");
+                    }
+                    options.verifyClassPath = value;
+                }
+                case "deterministic" -> options.deterministic = parseFlag(name, value);
+                case "list-dirs" -> options.listDirectories = parseFlag(name, value);
+                case "pipeline" -> options.pipeline = parsePipeline(name, value);
+                case "pipeline-queue" -> pipelineQueue = parseCount(name, value);
+                case "durability" -> options.durability = parseDurability(name, value);
+                case "io-min" -> options.ioMin = parseCount(name, value);
+                case "io-max" -> options.ioMax = parseCount(name, value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if (options.atomic && options.incremental) {
+            throw new IllegalArgumentException("--atomic and --incremental cannot be combined");
+        }
+        if (options.watch && (options.atomic || options.incremental)) {
+            throw new IllegalArgumentException("--watch cannot be combined with --atomic or --incremental");
+        }
+        if (options.resume && (options.atomic || options.incremental || options.watch)) {
+            throw new IllegalArgumentException("--resume cannot be combined with --atomic, --incremental or --watch");
+        }
+        if (options.sync != null && (options.atomic || options.incremental || options.resume || options.watch)) {
+            throw new IllegalArgumentException(
+                    "--sync cannot be combined with --atomic, --incremental, --resume or --watch");
+        }
+        if (pipelineQueue != null) {
+            if (options.pipeline == null) {
+                throw new IllegalArgumentException("--pipeline-queue requires --pipeline");
+            }
+            options.pipeline = options.pipeline.withQueueCapacity(pipelineQueue);
+        }
+        options.pathFilter = PathFilter.of(includes, excludes);
+        if (options.ioMin > options.ioMax) {
+            throw new IllegalArgumentException("--io-min cannot be larger than --io-max");
+        }
+        return options;
+    }
+
+    private static boolean parseFlag(String name, String value) {
+        if (value == null || value.equalsIgnoreCase("true")) {
+            return true;
+        } else if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects true or false but got: " + value);
+    }
+
+    private static ProgressReporter.Level parseLevel(String name, String value, ProgressReporter.Level level) {
+        if (value != null) {
+            throw new IllegalArgumentException("Option --" + name + " does not take a value");
+        }
+        return level;
+    }
+
+    private static DirectorySink.Durability parseDurability(String name, String value) {
+        return switch (value == null ? "" : value) {
+            case "none" -> DirectorySink.Durability.NONE;
+            case "batched" -> DirectorySink.Durability.BATCHED;
+            case "per-file" -> DirectorySink.Durability.PER_FILE;
+            default -> throw new IllegalArgumentException("Option --" + name +
+                    " expects none, batched or per-file but got: " + value);
+        };
+    }
+
+    private static List<String> parseSync(String name, String value) {
+        if (value == null) {
+            return List.of();
+        }
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : value.split(",", -1)) {
+            String normalized = prefix.trim().replace('\\', '/');
+            while (normalized.startsWith("./")) {
+                normalized = normalized.substring(2);
+            }
+            while (normalized.endsWith("/")) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+            if (normalized.isEmpty() || normalized.startsWith("/") ||
+                    Arrays.asList(normalized.split("/")).contains("..")) {
+                throw new IllegalArgumentException("Option --" + name +
+                        " expects paths relative to the output directory but got: " + value);
+            }
+            prefixes.add(normalized);
+        }
+        return List.copyOf(prefixes);
+    }
+
+    private static List<String> parsePatterns(String name, String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Option --" + name + " expects one or more path patterns");
+        }
+        return Arrays.asList(value.split(","));
+    }
+
+    private static GenerationPipeline.Settings parsePipeline(String name, String value) {
+        GenerationPipeline.Settings defaults = GenerationPipeline.Settings.defaults();
+        if (value == null) {
+            return defaults;
+        }
+        String[] counts = value.split(",", -1);
+        if (counts.length != 3) {
+            throw new IllegalArgumentException("Option --" + name +
+                    " expects parse, render and write workers like 1,4,8 but got: " + value);
+        }
+        return new GenerationPipeline.Settings(parseCount(name, counts[0]), parseCount(name, counts[1]),
+                parseCount(name, counts[2]), defaults.queueCapacity());
+    }
+
+    private static int parseCount(String name, String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 1) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects a positive number but got: " + value);
+    }
+
+    public static String usage() {
+        return """
+                Options:
+                  --atomic    generate into a staging directory and publish it with atomic
+                              renames. The generic generator swaps the whole output
+                              directory, which must not be the current directory; the
+                              project generator replaces only the project folder and leaves
+                              other entries of the output directory alone
+                  --incremental
+                              keep a content-hash manifest in the output directory and only
+                              rewrite files whose content changed; stale files are reported
+                  --resume    keep a journal of completed entries in the output directory
+                              while generating; rerunning with the same spec and output
+                              after an interruption skips what the journal records as done.
+                              The journal is removed when a run completes
+                  --watch     after generating, keep watching the markdown file and apply only
+                              the differences to the output directory on every save; only
+                              GenericProjectStructureGenerator and ProjectStructureGenerator
+                  --sync[=PATH,...]
+                              make the output directory match the spec: files whose content
+                              differs are replaced, identical ones are left untouched, and
+                              entries the spec does not produce are deleted from the
+                              directories it produces, only below the given paths if any.
+                              Other entries of the output directory itself are never
+                              deleted. Applies to directory output
+                  --include=GLOB,...
+                              generate only the entries matching one of the patterns, the
+                              directories below them and the directories above them;
+                              may be repeated. A pattern starting with / is matched from
+                              the output root, any other one from any directory, e.g.
+                              book-service/** or **/*.java
+                  --exclude=GLOB,...
+                              skip the entries matching one of the patterns and everything
+                              below them; may be repeated. With --sync, only entries the
+                              patterns select are deleted
+                  --hard-links
+                              write each distinct file content once and create later files
+                              with the same content as hard links to it; falls back to
+                              copies where links are not possible. Editing a linked file in
+                              place changes all of its names
+                  --verify-java
+                              after generating, compile the generated Java sources in
+                              memory and fail on compile errors; JUnit is stubbed if absent
+                  --verify-classpath=PATH
+                              class path of the libraries the generated sources use
+                  --deterministic
+                              byte-identical output for identical specs: entries in sorted
+                              order and every timestamp set to SOURCE_DATE_EPOCH, or to
+                              1980-02-01 when it is not set
+                  --list-dirs read each existing output directory once and answer existence
+                              checks from that listing instead of one file system lookup
+                              per entry; for regenerating into large existing trees.
+                              Applies to directory output
+                  --pipeline[=P,R,W]
+                              run parsing, rendering and writing as stages with P, R and W
+                              workers connected by bounded queues, and report throughput,
+                              queue occupancy and stall time per stage (default 1, one per
+                              core and %d). Archives render and write on one worker each
+                  --pipeline-queue=N
+                              capacity of each queue between pipeline stages (default %d)
+                  --durability=none|batched|per-file
+                              how generated files and directories are synced to storage:
+                              not at all (default), all at once when generation completes,
+                              or each file as it is written. Applies to directory output
+                  --quiet     print nothing but warnings and errors
+                  --summary   print summaries and a progress line with items per second
+                  --verbose   also print one line per created item (default)
+                  --io-min=N, --io-max=N
+                              bounds for the number of parallel file writes, which adapts to
+                              the observed write latency (default 1 and %d; --io-max=1 writes
+                              sequentially). Archives are always written sequentially
+                """.formatted(GenerationPipeline.Settings.DEFAULT_WRITE_WORKERS,
+                GenerationPipeline.Settings.DEFAULT_QUEUE_CAPACITY, DEFAULT_IO_MAX);
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    public GenerationOptions setAtomic(boolean atomic) {
+        this.atomic = atomic;
+        return this;
+    }
+
+    public ProgressReporter.Level getReportLevel() {
+        return reportLevel;
+    }
+
+    public GenerationOptions setReportLevel(ProgressReporter.Level reportLevel) {
+        this.reportLevel = reportLevel;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public GenerationOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public GenerationOptions setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    public boolean isSync() {
+        return sync != null;
+    }
+
+    /**
+     * Paths relative to the output directory below which {@code --sync} may delete, an
+     * empty list for anywhere, or null if not syncing.
+     */
+    public List<String> getSyncAllowList() {
+        return sync;
+    }
+
+    public GenerationOptions setSync(List<String> allowList) {
+        this.sync = allowList == null ? null : List.copyOf(allowList);
+        return this;
+    }
+
+    /**
+     * The entries to generate, {@link PathFilter#ALL} unless --include or --exclude is given.
+     */
+    public PathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    public GenerationOptions setPathFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+        return this;
+    }
+
+    public boolean isHardLinks() {
+        return hardLinks;
+    }
+
+    public GenerationOptions setHardLinks(boolean hardLinks) {
+        this.hardLinks = hardLinks;
+        return this;
+    }
+
+    public boolean isVerifyJava() {
+        return verifyJava;
+    }
+
+    public GenerationOptions setVerifyJava(boolean verifyJava) {
+        this.verifyJava = verifyJava;
+        return this;
+    }
+
+    /**
+     * Class path for {@link JavaCompileCheck}, or null for the class path of this process.
+     */
+    public String getVerifyClassPath() {
+        return verifyClassPath;
+    }
+
+    public GenerationOptions setVerifyClassPath(String verifyClassPath) {
+        this.verifyClassPath = verifyClassPath;
+        return this;
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    public GenerationOptions setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        return this;
+    }
+
+    /**
+     * The modification time given to every generated entry in deterministic mode, taken
+     * from the SOURCE_DATE_EPOCH environment variable like other reproducible builds do;
+     * null when entries keep the time they are written at.
+     */
+    public FileTime getFixedTime() {
+        if (!deterministic) {
+            return null;
+        }
+        String epoch = System.getenv("SOURCE_DATE_EPOCH");
+        if (epoch == null || epoch.isBlank()) {
+            return FileTime.fromMillis(DEFAULT_FIXED_TIME * 1000);
+        }
+        try {
+            return FileTime.fromMillis(Long.parseLong(epoch.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("SOURCE_DATE_EPOCH expects seconds since the epoch but got: " + epoch);
+        }
+    }
+
+    public boolean isListDirectories() {
+        return listDirectories;
+    }
+
+    public GenerationOptions setListDirectories(boolean listDirectories) {
+        this.listDirectories = listDirectories;
+        return this;
+    }
+
+    /**
+     * Stage settings when parsing, rendering and writing run as a {@link GenerationPipeline},
+     * or null when they run one after another.
+     */
+    public GenerationPipeline.Settings getPipeline() {
+        return pipeline;
+    }
+
+    public GenerationOptions setPipeline(GenerationPipeline.Settings pipeline) {
+        this.pipeline = pipeline;
+        return this;
+    }
+
+    public DirectorySink.Durability getDurability() {
+        return durability;
+    }
+
+    public GenerationOptions setDurability(DirectorySink.Durability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public GenerationOptions setWatch(boolean watch) {
+        this.watch = watch;
+        return this;
+    }
+
+    /**
+     * Rejects --watch for an entry point that generates once, instead of ignoring it.
+     *
+     * @throws IllegalArgumentException if --watch was given
+     */
+    public GenerationOptions rejectWatch(String program) {
+        if (watch) {
+            throw new IllegalArgumentException("--watch is not supported by " + program);
+        }
+        return this;
+    }
+
+    public int getIoMin() {
+        return ioMin;
+    }
+
+    public int getIoMax() {
+        return ioMax;
+    }
+
+    /**
+     * Sets the bounds for the number of file writes in flight; 1 and 1 write sequentially.
+     */
+    public GenerationOptions setIoConcurrency(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid I/O concurrency bounds: " + min + ".." + max);
+        }
+        this.ioMin = min;
+        this.ioMax = max;
+        return this;
+    }
+}
@@ -0,0 +1,402 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs a generation as three stages connected by bounded queues: parsing spec chunks
+ * into entries, rendering the content of each entry and writing it to the sink. Each
+ * stage has its own workers, and a full queue blocks the stage feeding it, so a slow
+ * stage holds back the ones before it instead of letting rendered content pile up.
+ *
+ * <p>Every stage counts its items, the time its workers spend working, waiting for
+ * input (idle) and waiting for room in the next queue (stalled), and samples how full
+ * its input queue is. The stage whose workers are busiest is the one that limits the
+ * run; {@link #report} names it.</p>
+ *
+ * <p>Stages with several workers do not keep the order of their items. Archives depend
+ * on entry order, so for sinks other than directories rendering and writing run on one
+ * worker each. The first failure stops the run: later items are drained unprocessed
+ * and the failure is thrown by {@link #run}.</p>
+ *
+ * @param <S> spec chunks the parse stage reads
+ * @param <E> entries the parse stage produces
+ */
+public final class GenerationPipeline<S, E> {
+    private static final Object END = new Object();
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    @FunctionalInterface
+    public interface Emitter<T> {
+        void emit(T item) throws IOException;
+    }
+
+    /**
+     * Turns a chunk of the spec into entries. With several parse workers, chunks are
+     * parsed in any order; a parser whose entries must come out in order collects them
+     * and emits them from {@link #finish}.
+     */
+    @FunctionalInterface
+    public interface Parser<S, E> {
+        void parse(S chunk, Emitter<E> out) throws IOException;
+
+        /**
+         * Called once every chunk has been parsed, on the last parse worker to finish.
+         */
+        default void finish(Emitter<E> out) throws IOException {
+        }
+    }
+
+    @FunctionalInterface
+    public interface Renderer<E> {
+        Output render(E entry) throws IOException;
+    }
+
+    /**
+     * A rendered entry: a file with its content, or a directory when the content is null.
+     * The callback receives the outcome on the write worker, as with {@link ParallelWriter}.
+     */
+    public record Output(String path, byte[] content, ParallelWriter.Callback callback) {
+    }
+
+    /**
+     * Worker counts of the stages and the capacity of each queue between them.
+     */
+    public record Settings(int parseWorkers, int renderWorkers, int writeWorkers, int queueCapacity) {
+        public static final int DEFAULT_WRITE_WORKERS = 4;
+        public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+        public Settings {
+            if (parseWorkers < 1 || renderWorkers < 1 || writeWorkers < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("Invalid pipeline settings: " + parseWorkers + "," +
+                        renderWorkers + "," + writeWorkers + " workers, queue capacity " + queueCapacity);
+            }
+        }
+
+        /**
+         * One parse worker, a render worker per core and {@value #DEFAULT_WRITE_WORKERS}
+         * write workers.
+         */
+        public static Settings defaults() {
+            return new Settings(1, Runtime.getRuntime().availableProcessors(), DEFAULT_WRITE_WORKERS,
+                    DEFAULT_QUEUE_CAPACITY);
+        }
+
+        public Settings withParseWorkers(int parseWorkers) {
+            return new Settings(parseWorkers, renderWorkers, writeWorkers, queueCapacity);
+        }
+
+        public Settings withQueueCapacity(int queueCapacity) {
+            return new Settings(parseWorkers, renderWorkers, writeWorkers, queueCapacity);
+        }
+    }
+
+    /**
+     * What a stage did in a run. Busy, idle and stalled are fractions of the time its
+     * workers existed; the queue figures are sampled on every take from its input queue.
+     */
+    public record StageMetrics(String name, int workers, long items, long emitted, long nanos,
+                               double busy, double idle, double stalled,
+                               double averageQueued, int maxQueued, int capacity) {
+        public double itemsPerSecond() {
+            return nanos > 0 ? items * 1e9 / nanos : 0;
+        }
+
+        public double emittedPerSecond() {
+            return nanos > 0 ? emitted * 1e9 / nanos : 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(Object item, Emitter<Object> out) throws IOException;
+    }
+
+    private final class Stage {
+        final String name;
+        final int workers;
+        final BlockingQueue<Object> input;
+        final Handler handler;
+        final Handler finisher;
+        Stage next;
+
+        final AtomicInteger running;
+        final LongAdder items = new LongAdder();
+        final LongAdder emitted = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder idleNanos = new LongAdder();
+        final LongAdder stalledNanos = new LongAdder();
+        final LongAdder queuedSum = new LongAdder();
+        final LongAdder queuedSamples = new LongAdder();
+        final AtomicInteger maxQueued = new AtomicInteger();
+        final AtomicLong firstItem = new AtomicLong();
+        volatile long finished;
+
+        Stage(String name, int workers, Handler handler, Handler finisher) {
+            this.name = name;
+            this.workers = workers;
+            this.input = new ArrayBlockingQueue<>(capacity);
+            this.handler = handler;
+            this.finisher = finisher;
+            this.running = new AtomicInteger(workers);
+        }
+
+        StageMetrics metrics() {
+            long start = firstItem.get();
+            long nanos = start == 0 ? 0 : finished - start;
+            double workerNanos = Math.max(1, (double) workers * (finished - started));
+            long samples = queuedSamples.sum();
+            return new StageMetrics(name, workers, items.sum(), emitted.sum(), nanos,
+                    busyNanos.sum() / workerNanos, idleNanos.sum() / workerNanos, stalledNanos.sum() / workerNanos,
+                    samples == 0 ? 0 : queuedSum.sum() / (double) samples, maxQueued.get(), capacity);
+        }
+    }
+
+    /**
+     * One worker thread of a stage. Times are kept locally and added to the stage when
+     * the worker ends.
+     */
+    private final class Worker implements Runnable {
+        private final Stage stage;
+        private long items;
+        private long emitted;
+        private long busy;
+        private long idle;
+        private long stalled;
+
+        Worker(Stage stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Object item; (item = take()) != END; ) {
+                    if (failure.get() == null) {
+                        stage.firstItem.compareAndSet(0, System.nanoTime());
+                        process(stage.handler, item);
+                        items++;
+                    }
+                }
+                if (stage.running.decrementAndGet() == 0) {
+                    if (stage.finisher != null && failure.get() == null) {
+                        process(stage.finisher, null);
+                    }
+                    stage.finished = System.nanoTime();
+                    if (stage.next != null) {
+                        for (int i = 0; i < stage.next.workers; i++) {
+                            put(stage.next.input, END);
+                        }
+                    }
+                }
+            } finally {
+                stage.items.add(items);
+                stage.emitted.add(emitted);
+                stage.busyNanos.add(busy);
+                stage.idleNanos.add(idle);
+                stage.stalledNanos.add(stalled);
+            }
+        }
+
+        private void process(Handler handler, Object item) {
+            long start = System.nanoTime();
+            long stalledBefore = stalled;
+            try {
+                handler.handle(item, this::emit);
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new IOException("Pipeline stage " + stage.name + " failed", e));
+            }
+            busy += System.nanoTime() - start - (stalled - stalledBefore);
+        }
+
+        private void emit(Object item) {
+            // After a failure nothing downstream is processed any more
+            if (failure.get() == null) {
+                emitted++;
+                put(stage.next.input, item);
+            }
+        }
+
+        private Object take() {
+            Object item = stage.input.poll();
+            if (item == null) {
+                long start = System.nanoTime();
+                item = awaitTake(stage.input);
+                idle += System.nanoTime() - start;
+            }
+            int queued = stage.input.size();
+            stage.queuedSum.add(queued);
+            stage.queuedSamples.increment();
+            stage.maxQueued.accumulateAndGet(queued, Math::max);
+            return item;
+        }
+
+        private void put(BlockingQueue<Object> queue, Object item) {
+            if (!queue.offer(item)) {
+                long start = System.nanoTime();
+                awaitPut(queue, item);
+                stalled += System.nanoTime() - start;
+            }
+        }
+    }
+
+    private final OutputSink sink;
+    private final int capacity;
+    private final List<Stage> stages;
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private long started;
+
+    /**
+     * @param sink the sink the write stage writes to; unless it supports concurrent
+     *             writes, rendering and writing each run on a single worker
+     */
+    @SuppressWarnings("unchecked")
+    public GenerationPipeline(OutputSink sink, Settings settings, Parser<S, E> parser, Renderer<E> renderer) {
+        this.sink = sink;
+        this.capacity = settings.queueCapacity();
+        boolean ordered = !sink.supportsConcurrentWrites();
+
+        Stage parse = new Stage("parse", settings.parseWorkers(),
+                (chunk, out) -> parser.parse((S) chunk, (Emitter<E>) (Emitter<?>) out),
+                (ignored, out) -> parser.finish((Emitter<E>) (Emitter<?>) out));
+        Stage render = new Stage("render", ordered ? 1 : settings.renderWorkers(),
+                (entry, out) -> out.emit(renderer.render((E) entry)), null);
+        Stage write = new Stage("write", ordered ? 1 : settings.writeWorkers(),
+                (output, out) -> write((Output) output), null);
+        parse.next = render;
+        render.next = write;
+        this.stages = List.of(parse, render, write);
+    }
+
+    private void write(Output output) throws IOException {
+        boolean written = false;
+        IOException writeFailure = null;
+        try {
+            written = output.content() == null ? sink.createDirectory(output.path()) :
+                    sink.writeFile(output.path(), output.content());
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+        output.callback().completed(written, writeFailure);
+    }
+
+    /**
+     * Feeds the chunks to the parse stage from the calling thread and returns once every
+     * stage has finished. Can be run once.
+     */
+    public void run(Iterable<? extends S> chunks) throws IOException {
+        if (started != 0) {
+            throw new IllegalStateException("Pipeline has already run");
+        }
+        started = System.nanoTime();
+
+        List<Thread> threads = new ArrayList<>();
+        for (Stage stage : stages) {
+            for (int i = 0; i < stage.workers; i++) {
+                Thread thread = new Thread(new Worker(stage), "pipeline-" + stage.name + "-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        Stage first = stages.get(0);
+        for (S chunk : chunks) {
+            if (failure.get() != null) {
+                break;
+            }
+            awaitPut(first.input, chunk);
+        }
+        for (int i = 0; i < first.workers; i++) {
+            awaitPut(first.input, END);
+        }
+
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    // The workers drain what is left once a failure is recorded
+                    interrupted = true;
+                    fail(new InterruptedIOException("Interrupted while waiting for the pipeline"));
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        IOException thrown = failure.get();
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    private void fail(IOException e) {
+        if (!failure.compareAndSet(null, e)) {
+            failure.get().addSuppressed(e);
+        }
+    }
+
+    // The workers are never interrupted by anyone else; an interrupt fails the run, and
+    // the queues are still served so every stage sees its end marker
+    private Object awaitTake(BlockingQueue<Object> queue) {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                fail(new InterruptedIOException("Pipeline worker interrupted"));
+            }
+        }
+    }
+
+    private void awaitPut(BlockingQueue<Object> queue, Object item) {
+        while (true) {
+            try {
+                queue.put(item);
+                return;
+            } catch (InterruptedException e) {
+                fail(new InterruptedIOException("Pipeline worker interrupted"));
+            }
+        }
+    }
+
+    /**
+     * Metrics of the parse, render and write stages, in that order, once {@link #run}
+     * has returned.
+     */
+    public List<StageMetrics> metrics() {
+        return stages.stream().map(Stage::metrics).toList();
+    }
+
+    /**
+     * Reports a line per stage and the stage that limited the run.
+     */
+    public void report(ProgressReporter reporter) {
+        StageMetrics busiest = null;
+        for (StageMetrics stage : metrics()) {
+            // The parse stage turns a few chunks into many entries, so both rates are shown
+            String throughput = stage.name().equals("write") ?
+                    String.format("%,d written (%,.0f/s)", stage.items(), stage.itemsPerSecond()) :
+                    String.format("%,d in (%,.0f/s), %,d out (%,.0f/s)", stage.items(), stage.itemsPerSecond(),
+                            stage.emitted(), stage.emittedPerSecond());
+            reporter.info(String.format("Pipeline %s: %d worker%s, %s; busy %.0f%%, idle %.0f%%, stalled %.0f%%; " +
+                            "queue avg %.1f, max %d of %d", stage.name(), stage.workers(),
+                    stage.workers() == 1 ? "" : "s", throughput, stage.busy() * 100, stage.idle() * 100,
+                    stage.stalled() * 100, stage.averageQueued(), stage.maxQueued(), stage.capacity()));
+            if (busiest == null || stage.busy() > busiest.busy()) {
+                busiest = stage;
+            }
+        }
+        if (busiest != null && busiest.items() > 0) {
+            reporter.info(String.format("Pipeline limited by the %s stage (workers busy %.0f%% of the time)",
+                    busiest.name(), busiest.busy() * 100));
+        }
+    }
+}
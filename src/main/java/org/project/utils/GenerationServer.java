@@ -0,0 +1,248 @@
+package org.project.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Generation server that keeps one JVM warm for many requests. A markdown spec POSTed
+ * to {@code /generate} is answered with the generated project as a zip stream; entries
+ * go straight from the generator into the response through a {@link ZipSink}, so
+ * nothing is written to disk.
+ *
+ * <p>Every exchange runs on its own virtual thread. The generators, their compiled
+ * patterns and templates are loaded and exercised once at startup, so the first
+ * request does not pay for class loading and JIT warm-up either.</p>
+ *
+ * <p>Requests are not authenticated, so the server only listens on the loopback
+ * interface unless another address is given with {@code --bind}.</p>
+ *
+ * <pre>
+ * curl --data-binary @spec.md -o project.zip http://localhost:8080/generate?kind=project
+ * </pre>
+ */
+public class GenerationServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_SPEC_BYTES = 4 * 1024 * 1024;
+    private static final int WARMUP_RUNS = 200;
+    private static final String[] WARMUP_SPECS = {"/intellij_project_structure.md", "/carparts_project_files.md"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ProgressReporter log;
+
+    /**
+     * Listens on the loopback interface only.
+     */
+    public GenerationServer(int port, ProgressReporter log) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, log);
+    }
+
+    public GenerationServer(InetAddress address, int port, ProgressReporter log) throws IOException {
+        this.log = log;
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/generate", this::handleGenerate);
+        server.createContext("/health", this::handleHealth);
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) {
+        GenerationOptions options;
+        int port = DEFAULT_PORT;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        try {
+            // The port and address are taken out before the shared options are parsed
+            List<String> generationArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    port = parsePort(arg.substring("--port=".length()));
+                } else if (arg.startsWith("--bind=")) {
+                    address = parseAddress(arg.substring("--bind=".length()));
+                } else {
+                    generationArgs.add(arg);
+                }
+            }
+            options = GenerationOptions.parse(generationArgs.toArray(new String[0])).rejectWatch("GenerationServer");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            options = null;
+        }
+
+        if (options == null || !options.getArguments().isEmpty()) {
+            System.out.println("Usage: java GenerationServer [--port=N] [--bind=ADDRESS] [--quiet|--summary|--verbose]");
+            System.out.println("Example: java GenerationServer --port=9000");
+            System.out.println("Listens on the loopback interface unless --bind gives another address, e.g.");
+            System.out.println("--bind=0.0.0.0 for all interfaces; requests are not authenticated.");
+            System.out.println("POST a markdown spec to /generate[?kind=auto|generic|project][&name=archive-name]");
+            System.out.println("to receive the generated project as a zip archive. GET /health reports readiness.");
+            System.exit(1);
+        }
+
+        // Never closed: the reporter prints for as long as the server runs
+        ProgressReporter log = new ProgressReporter(options.getReportLevel());
+        try {
+            warmUp();
+            GenerationServer server = new GenerationServer(address, port, log);
+            server.start();
+            log.info("Generation server listening on " + address.getHostAddress() + " port " + server.getPort());
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Option --port expects a port number but got: " + value);
+    }
+
+    private static InetAddress parseAddress(String value) {
+        try {
+            if (!value.isEmpty()) {
+                return InetAddress.getByName(value);
+            }
+        } catch (UnknownHostException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Option --bind expects a host name or address but got: " + value);
+    }
+
+    /**
+     * Generates the bundled example specs into discarded archives until the parsers and
+     * templates are compiled.
+     */
+    public static void warmUp() throws IOException {
+        List<String> specs = new ArrayList<>();
+        for (String resource : WARMUP_SPECS) {
+            try (InputStream in = GenerationServer.class.getResourceAsStream(resource)) {
+                if (in != null) {
+                    specs.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            for (String spec : specs) {
+                // Both generators, whichever the spec would normally select
+                for (BatchGenerator.Kind kind : new BatchGenerator.Kind[]{BatchGenerator.Kind.GENERIC,
+                        BatchGenerator.Kind.PROJECT}) {
+                    generate(spec, kind, OutputStream.nullOutputStream(), new ProgressReporter(ProgressReporter.Level.QUIET));
+                }
+            }
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given delay for running exchanges, and
+     * shuts down the virtual thread executor.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sendText(exchange, 200, "OK");
+        }
+    }
+
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Use POST with the markdown spec as request body");
+                return;
+            }
+
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            BatchGenerator.Kind kind;
+            try {
+                kind = BatchGenerator.Kind.valueOf(query.getOrDefault("kind", "auto").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, "kind must be auto, generic or project");
+                return;
+            }
+            String name = query.getOrDefault("name", "project").replaceAll("[^A-Za-z0-9._-]", "_");
+
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_SPEC_BYTES + 1);
+            if (body.length > MAX_SPEC_BYTES) {
+                sendText(exchange, 413, "Spec is larger than " + MAX_SPEC_BYTES + " bytes");
+                return;
+            }
+            String spec = new String(body, StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", "application/zip");
+            exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + name + ".zip\"");
+            // Length 0: the archive is streamed with chunked encoding as it is generated
+            exchange.sendResponseHeaders(200, 0);
+
+            long items = generate(spec, kind, exchange.getResponseBody(), new ProgressReporter(ProgressReporter.Level.QUIET));
+            log.info(String.format("POST %s: %,d items in %.1f ms", exchange.getRequestURI(), items,
+                    (System.nanoTime() - start) / 1e6));
+        } catch (IOException | RuntimeException e) {
+            // Once streaming started the status is sent; closing the exchange truncates the response
+            log.warn("Warning: Request " + exchange.getRequestURI() + " failed: " + e.getMessage());
+        }
+    }
+
+    private static long generate(String spec, BatchGenerator.Kind kind, OutputStream out, ProgressReporter reporter)
+            throws IOException {
+        try (reporter;
+             ZipSink sink = new ZipSink(out);
+             ParallelWriter writer = new ParallelWriter(sink, new GenerationOptions())) {
+            BatchGenerator.generateSpec(spec, kind, writer, reporter);
+            sink.commit();
+            return reporter.getItemCount();
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
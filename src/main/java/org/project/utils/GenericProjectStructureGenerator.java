@@ -1,8 +1,10 @@
 package org.project.utils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class GenericProjectStructureGenerator {
@@ -13,42 +15,201 @@ public class GenericProjectStructureGenerator {
     private static Pattern FILE_PATTERN = Pattern.compile("^(\\s*)([├└]──|[│\\s]*[├└]──)\\s*(.+?\\.[a-zA-Z0-9]+)\\s*$");
     private static Pattern SIMPLE_ITEM_PATTERN = Pattern.compile("^(\\s*)(.+?)/?\\s*$");
 
+    // Content templates are compiled once, on first use, so starting the generator costs
+    // no resource reads; the package declaration (or "") comes first
+    private static final class JavaTemplates {
+        static final Template TEST = Template.load("/templates/java-test.tmpl", "package", "className");
+        static final Template EXCEPTION = Template.load("/templates/java-exception.tmpl", "package", "className");
+        static final Template INTERFACE = Template.load("/templates/java-interface.tmpl", "package", "className");
+        static final Template CLASS = Template.load("/templates/java-class.tmpl", "package", "className");
+    }
+
+    private static final class HtmlTemplate {
+        static final Template PAGE = Template.load("/templates/html.tmpl", "title");
+    }
+
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java ProjectStructureGenerator <markdown-file> <output-directory>");
+        GenerationOptions options;
+        try {
+            options = GenerationOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            options = null;
+        }
+
+        if (options == null || options.getArguments().size() != 2) {
+            System.out.println("Usage: java ProjectStructureGenerator [options] <markdown-file> <output-directory|archive.zip|archive.tar[.gz]|repository.git>");
             System.out.println("Example: java ProjectStructureGenerator project-structure.md ./my-project");
+            System.out.println("Example: java ProjectStructureGenerator project-structure.md ./my-project.zip");
+            System.out.print(GenerationOptions.usage());
             System.exit(1);
         }
 
-        String markdownFile = args[0];
-        String outputDirectory = args[1];
+        String markdownFile = options.getArguments().get(0);
+        String outputDirectory = options.getArguments().get(1);
 
         try {
-            generateProjectStructure(markdownFile, outputDirectory);
-            System.out.println("Project structure generated successfully in: " + outputDirectory);
-        } catch (IOException e) {
+            generateProjectStructure(markdownFile, outputDirectory, options);
+            if (options.getReportLevel() != ProgressReporter.Level.QUIET) {
+                System.out.println("Project structure generated successfully in: " + outputDirectory);
+            }
+            if (options.isWatch()) {
+                PathFilter filter = options.getPathFilter();
+                SpecWatcher.watch(markdownFile, outputDirectory, false, options, (spec, writer, reporter) ->
+                        generateProjectStructure(spec.lines().toList(), writer, reporter, false, null, filter));
+            }
+        } catch (IOException | IllegalArgumentException e) {
             System.err.println("Error: " + e.getMessage());
             System.exit(1);
         }
     }
 
+    /**
+     * Generates the structure described in the markdown file. The output target is a
+     * directory, or a .zip/.tar/.tar.gz archive that entries are streamed into.
+     */
     public static void generateProjectStructure(String markdownFile, String outputDirectory) throws IOException {
+        generateProjectStructure(markdownFile, outputDirectory, new GenerationOptions());
+    }
+
+    public static void generateProjectStructure(String markdownFile, String outputDirectory,
+                                                GenerationOptions options) throws IOException {
         List<String> lines = Files.readAllLines(Paths.get(markdownFile));
-        Path basePath = Paths.get(outputDirectory);
 
-        // Create base directory if it doesn't exist
-        if (!Files.exists(basePath)) {
-            Files.createDirectories(basePath);
+        // The output directory is the project, so --atomic swaps it as a whole
+        try (OutputSink sink = OutputSink.open(outputDirectory, false, options,
+                StagedDirectorySink.Scope.DIRECTORY)) {
+            generate(lines, sink, options);
+        }
+    }
+
+    /**
+     * Generates the structure into a directory on any {@link FileSystem}, for example
+     * one created with {@link MemoryFileSystemProvider#newFileSystem()}.
+     */
+    public static void generateProjectStructure(Path markdownFile, Path outputDirectory) throws IOException {
+        generateProjectStructure(markdownFile, outputDirectory, new GenerationOptions());
+    }
+
+    public static void generateProjectStructure(Path markdownFile, Path outputDirectory,
+                                                GenerationOptions options) throws IOException {
+        List<String> lines = Files.readAllLines(markdownFile);
+
+        // The output directory is the project, so --atomic swaps it as a whole
+        try (OutputSink sink = OutputSink.open(outputDirectory, false, options,
+                StagedDirectorySink.Scope.DIRECTORY)) {
+            generate(lines, sink, options);
+        }
+    }
+
+    private static void generate(List<String> lines, OutputSink sink, GenerationOptions options) throws IOException {
+        JavaCompileCheck.SourceCapture sources = options.isVerifyJava() ? new JavaCompileCheck.SourceCapture(sink) : null;
+        try (ProgressReporter reporter = new ProgressReporter(options.getReportLevel());
+             ParallelWriter writer = new ParallelWriter(sources != null ? sources : sink, options)) {
+            generateProjectStructure(lines, writer, reporter, options.isDeterministic(), options.getPipeline(),
+                    options.getPathFilter());
+            sink.commit();
+            sink.report(reporter);
+            if (sources != null) {
+                JavaCompileCheck.verify(sources, options, reporter);
+            }
         }
+    }
 
-        // Parse the structure into a tree representation first
-        List<StructureItem> structure = parseStructureFromMarkdown(lines);
+    public static void generateProjectStructure(List<String> lines, OutputSink sink) throws IOException {
+        try (ProgressReporter reporter = new ProgressReporter(ProgressReporter.Level.VERBOSE)) {
+            generateProjectStructure(lines, sink, reporter);
+        }
+    }
 
-        // Generate the actual file system structure recursively
-        generateStructureRecursively(structure, basePath);
+    public static void generateProjectStructure(List<String> lines, OutputSink sink,
+                                                ProgressReporter reporter) throws IOException {
+        try (ParallelWriter writer = new ParallelWriter(sink, new GenerationOptions())) {
+            generateProjectStructure(lines, writer, reporter);
+        }
+    }
 
-        System.out.println("Project structure generation completed!");
-        System.out.println("Total items processed: " + countTotalItems(structure));
+    /**
+     * Generates the structure through a writer, which may share its pool with writers
+     * for other runs. Every write has finished when this returns; committing the sink
+     * is left to the caller.
+     */
+    public static void generateProjectStructure(List<String> lines, ParallelWriter writer,
+                                                ProgressReporter reporter) throws IOException {
+        generateProjectStructure(lines, writer, reporter, false);
+    }
+
+    /**
+     * @param sorted whether the items of every directory are generated in name order
+     *               rather than in the order the spec lists them, so archive entries
+     *               do not depend on how the spec is arranged
+     */
+    public static void generateProjectStructure(List<String> lines, ParallelWriter writer,
+                                                ProgressReporter reporter, boolean sorted) throws IOException {
+        generateProjectStructure(lines, writer, reporter, sorted, null);
+    }
+
+    /**
+     * @param pipeline how to run parsing, rendering and writing as a {@link GenerationPipeline},
+     *                 or null to parse first and then render and write from the calling thread.
+     *                 The tree parser reads the spec in order, so parsing always has one worker
+     */
+    public static void generateProjectStructure(List<String> lines, ParallelWriter writer, ProgressReporter reporter,
+                                                boolean sorted, GenerationPipeline.Settings pipeline) throws IOException {
+        generateProjectStructure(lines, writer, reporter, sorted, pipeline, PathFilter.ALL);
+    }
+
+    /**
+     * @param filter the part of the structure to generate; subtrees it excludes are
+     *               skipped without visiting their items
+     */
+    public static void generateProjectStructure(List<String> lines, ParallelWriter writer, ProgressReporter reporter,
+                                                boolean sorted, GenerationPipeline.Settings pipeline,
+                                                PathFilter filter) throws IOException {
+        long totalItems;
+        if (pipeline == null) {
+            // Parse the structure into a tree representation first
+            List<StructureItem> structure = parseStructureFromMarkdown(lines);
+            if (sorted) {
+                sort(structure);
+            }
+
+            // Generate the actual file system structure recursively
+            OutputSink sink = writer.getSink();
+            AtomicLong emitted = new AtomicLong();
+            emitRecursively(structure, "", null, filter, PathFilter.Selection.PARTIAL, null, entry -> {
+                emitted.incrementAndGet();
+                GenerationPipeline.Output output = render(entry, reporter);
+                if (output.content() == null) {
+                    output.callback().completed(sink.createDirectory(output.path()), null);
+                } else {
+                    writer.write(output.path(), output.content(), output.callback());
+                }
+            });
+            writer.awaitCompletion();
+            totalItems = emitted.get();
+        } else {
+            GenerationPipeline<List<String>, Entry> stages = new GenerationPipeline<>(writer.getSink(),
+                    pipeline.withParseWorkers(1),
+                    (spec, out) -> {
+                        List<StructureItem> structure = parseStructureFromMarkdown(spec);
+                        if (sorted) {
+                            sort(structure);
+                        }
+                        emitRecursively(structure, "", null, filter, PathFilter.Selection.PARTIAL, null, out);
+                    },
+                    entry -> render(entry, reporter));
+            stages.run(List.of(lines));
+            totalItems = stages.metrics().get(0).emitted();
+            stages.report(reporter);
+        }
+
+        reporter.info("Project structure generation completed!");
+        reporter.info("Total items processed: " + totalItems);
+        if (pipeline == null) {
+            writer.report(reporter);
+        }
+        reporter.summary();
     }
 
     private static List<StructureItem> parseStructureFromMarkdown(List<String> lines) {
@@ -113,43 +274,92 @@ public class GenericProjectStructureGenerator {
         return rootItems;
     }
 
-    private static void generateStructureRecursively(List<StructureItem> items, Path parentPath) throws IOException {
+    /**
+     * @param packageName Java package of the items, "" directly below a "java" directory,
+     *                    or null outside of Java source roots
+     * @param selection   how the filter selected the items' directory
+     * @param pending     directories above the items that the filter did not select, emitted
+     *                    before the first item below them that it does
+     */
+    private static void emitRecursively(List<StructureItem> items, String parentPath, String packageName,
+                                        PathFilter filter, PathFilter.Selection selection, PendingDirectory pending,
+                                        GenerationPipeline.Emitter<Entry> out) throws IOException {
+        // Computed once per directory and shared by every file in it
+        String packageDeclaration = packageName == null || packageName.isEmpty() ? "" :
+                "package " + packageName + ";\n\n";
+
         for (StructureItem item : items) {
-            Path itemPath = parentPath.resolve(item.getName());
+            String itemPath = parentPath.isEmpty() ? item.getName() : parentPath + "/" + item.getName();
+            PathFilter.Selection itemSelection = filter.select(itemPath, selection);
+            if (itemSelection == PathFilter.Selection.EXCLUDED) {
+                // Pruned along with everything below it
+                continue;
+            }
 
             if (item.isFile()) {
-                // Create file with all necessary parent directories
-                createFile(itemPath);
-                System.out.println("Created file: " + getRelativePath(itemPath));
+                if (itemSelection == PathFilter.Selection.INCLUDED) {
+                    PendingDirectory.emit(pending, out);
+                    out.emit(new Entry(itemPath, item.getName(), packageDeclaration, false));
+                }
             } else {
-                // Create directory with all necessary parent directories
-                if (!Files.exists(itemPath)) {
-                    Files.createDirectories(itemPath);
-                    System.out.println("Created directory: " + getRelativePath(itemPath));
+                Entry directory = new Entry(itemPath, item.getName(), null, true);
+                PendingDirectory below = null;
+                if (itemSelection == PathFilter.Selection.INCLUDED) {
+                    PendingDirectory.emit(pending, out);
+                    out.emit(directory);
+                } else {
+                    below = new PendingDirectory(directory, pending);
                 }
 
                 // Recursively create children
                 if (!item.getChildren().isEmpty()) {
-                    generateStructureRecursively(item.getChildren(), itemPath);
+                    emitRecursively(item.getChildren(), itemPath, childPackage(packageName, item.getName()),
+                            filter, itemSelection, below, out);
                 }
             }
         }
     }
 
-    private static String getRelativePath(Path path) {
-        try {
-            return Paths.get("").toAbsolutePath().relativize(path.toAbsolutePath()).toString();
-        } catch (Exception e) {
-            return path.toString();
+    // A directory the filter did not select, which is emitted once an item below it is
+    private static final class PendingDirectory {
+        private final Entry entry;
+        private final PendingDirectory parent;
+        private boolean emitted;
+
+        PendingDirectory(Entry entry, PendingDirectory parent) {
+            this.entry = entry;
+            this.parent = parent;
+        }
+
+        static void emit(PendingDirectory pending, GenerationPipeline.Emitter<Entry> out) throws IOException {
+            if (pending == null || pending.emitted) {
+                return;
+            }
+            emit(pending.parent, out);
+            out.emit(pending.entry);
+            pending.emitted = true;
+        }
+    }
+
+    // A "java" directory starts a new source root, as the nearest one wins
+    private static String childPackage(String packageName, String directoryName) {
+        if ("java".equals(directoryName)) {
+            return "";
+        } else if (packageName == null) {
+            return null;
         }
+        return packageName.isEmpty() ? directoryName : packageName + "." + directoryName;
     }
 
-    private static int countTotalItems(List<StructureItem> items) {
-        int count = items.size();
+    private static void sort(List<StructureItem> items) {
+        items.sort(Comparator.comparing(StructureItem::getName));
         for (StructureItem item : items) {
-            count += countTotalItems(item.getChildren());
+            sort(item.getChildren());
         }
-        return count;
+    }
+
+    // A file or directory of the structure; files carry the package declaration of their directory
+    private record Entry(String path, String name, String packageDeclaration, boolean directory) {
     }
 
     // Inner class to represent structure items
@@ -358,205 +568,87 @@ public class GenericProjectStructureGenerator {
                 itemName.lastIndexOf('.') < itemName.length() - 1;
     }
 
-    private static void createFile(Path filePath) throws IOException {
-        // Create parent directories if they don't exist
-        Path parentDir = filePath.getParent();
-        if (parentDir != null && !Files.exists(parentDir)) {
-            Files.createDirectories(parentDir);
-        }
-
-        // Create the file if it doesn't exist
-        if (!Files.exists(filePath)) {
-            try {
-                Files.createFile(filePath);
-
-                // Add basic content based on file type
-                String fileName = filePath.getFileName().toString();
-                String content = generateBasicContent(fileName, filePath);
-                if (!content.isEmpty()) {
-                    Files.write(filePath, content.getBytes());
+    private static GenerationPipeline.Output render(Entry entry, ProgressReporter reporter) {
+        String path = entry.path();
+        if (entry.directory()) {
+            // Create directory with all necessary parent directories
+            return new GenerationPipeline.Output(path, null, (created, failure) -> {
+                if (failure != null) {
+                    throw failure;
                 }
-            } catch (IOException e) {
-                System.err.println("Warning: Could not create file " + filePath + ": " + e.getMessage());
-                // Continue processing other files
-            }
+                if (created) {
+                    reporter.item("Created directory: " + path);
+                } else {
+                    reporter.item();
+                }
+            });
         }
+
+        // The sink creates missing parent directories and keeps files that already exist;
+        // the write may finish on another thread, which then reports it
+        return new GenerationPipeline.Output(path, generateBasicContent(entry.name(), entry.packageDeclaration()),
+                (written, failure) -> {
+                    if (failure != null) {
+                        reporter.warn("Warning: Could not create file " + path + ": " + failure.getMessage());
+                        // Continue processing other files
+                    }
+                    reporter.item("Created file: " + path);
+                });
     }
 
-    private static String generateBasicContent(String fileName, Path filePath) {
+    private static byte[] generateBasicContent(String fileName, String packageDeclaration) {
+        // Constant stubs are shared pre-encoded arrays; only generated text is encoded per file
         if (fileName.endsWith(".java")) {
-            return generateJavaContent(fileName, filePath);
+            return generateJavaContent(fileName, packageDeclaration);
         } else if (fileName.endsWith(".xml")) {
-            return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- TODO: Add XML content -->\n";
+            return StubTemplates.XML;
         } else if (fileName.endsWith(".properties")) {
-            return "# Configuration properties\n# TODO: Add properties\n";
+            return StubTemplates.PROPERTIES;
         } else if (fileName.endsWith(".md")) {
-            return "# " + fileName.substring(0, fileName.lastIndexOf('.')) + "\n\nTODO: Add documentation\n";
+            return encode("# " + fileName.substring(0, fileName.lastIndexOf('.')) + "\n\nTODO: Add documentation\n");
         } else if (fileName.endsWith(".gitignore")) {
-            return "# IDE files\n.idea/\n*.iml\n\n# Build files\ntarget/\nbuild/\nout/\n\n# OS files\n.DS_Store\nThumbs.db\n\n# Logs\n*.log\n";
+            return StubTemplates.GITIGNORE;
         } else if (fileName.equals("pom.xml")) {
-            return generatePomXml();
+            return StubTemplates.POM_XML;
         } else if (fileName.equals("build.gradle")) {
-            return generateBuildGradle();
+            return StubTemplates.BUILD_GRADLE;
         } else if (fileName.endsWith(".yml") || fileName.endsWith(".yaml")) {
-            return "# YAML configuration\n# TODO: Add configuration\n";
+            return StubTemplates.YAML;
         } else if (fileName.endsWith(".json")) {
-            return "{\n  \"TODO\": \"Add JSON content\"\n}\n";
+            return StubTemplates.JSON;
         } else if (fileName.endsWith(".html")) {
             return generateHtmlContent(fileName);
         } else if (fileName.endsWith(".css")) {
-            return "/* CSS Styles */\n/* TODO: Add styles */\n";
+            return StubTemplates.CSS;
         } else if (fileName.endsWith(".js")) {
-            return "// JavaScript\n// TODO: Add JavaScript code\n";
+            return StubTemplates.JS;
         } else if (fileName.endsWith(".sql")) {
-            return "-- SQL Script\n-- TODO: Add SQL statements\n";
+            return StubTemplates.SQL;
         }
-        return "";
+        return StubTemplates.EMPTY;
     }
 
-    private static String generateJavaContent(String fileName, Path filePath) {
-        String className = fileName.substring(0, fileName.lastIndexOf('.'));
-
-        // Try to determine package from path
-        String packageName = "";
-        Path parent = filePath.getParent();
-        if (parent != null) {
-            List<String> pathParts = new ArrayList<>();
-            boolean foundJava = false;
-
-            // Walk up the path to find 'java' directory
-            while (parent != null) {
-                String dirName = parent.getFileName().toString();
-                if ("java".equals(dirName)) {
-                    foundJava = true;
-                    break;
-                }
-                pathParts.add(0, dirName);
-                parent = parent.getParent();
-            }
+    private static byte[] encode(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
 
-            if (foundJava && !pathParts.isEmpty()) {
-                packageName = "package " + String.join(".", pathParts) + ";\n\n";
-            }
-        }
+    private static byte[] generateJavaContent(String fileName, String packageDeclaration) {
+        String className = fileName.substring(0, fileName.lastIndexOf('.'));
 
         // Generate appropriate class type
         if (className.endsWith("Test")) {
-            return packageName + String.format("""
-                import org.junit.jupiter.api.Test;
-                import static org.junit.jupiter.api.Assertions.*;
-                
-                public class %s {
-                    
-                    @Test
-                    public void testExample() {
-                        // TODO: Implement test
-                        assertTrue(true);
-                    }
-                }
-                """, className);
+            return JavaTemplates.TEST.render(packageDeclaration, className);
         } else if (className.endsWith("Exception")) {
-            return packageName + String.format("""
-                public class %s extends Exception {
-                    
-                    public %s(String message) {
-                        super(message);
-                    }
-                    
-                    public %s(String message, Throwable cause) {
-                        super(message, cause);
-                    }
-                }
-                """, className, className, className);
+            return JavaTemplates.EXCEPTION.render(packageDeclaration, className);
         } else if (className.endsWith("Interface") || className.startsWith("I")) {
-            return packageName + String.format("""
-                public interface %s {
-                    // TODO: Define interface methods
-                }
-                """, className);
+            return JavaTemplates.INTERFACE.render(packageDeclaration, className);
         } else {
-            return packageName + String.format("""
-                public class %s {
-                    
-                    public %s() {
-                        // TODO: Implement constructor
-                    }
-                    
-                    // TODO: Add methods
-                }
-                """, className, className);
+            return JavaTemplates.CLASS.render(packageDeclaration, className);
         }
     }
 
-    private static String generateHtmlContent(String fileName) {
+    private static byte[] generateHtmlContent(String fileName) {
         String title = fileName.substring(0, fileName.lastIndexOf('.'));
-        return String.format("""
-                <!DOCTYPE html>
-                <html lang="en">
-                <head>
-                    <meta charset="UTF-8">
-                    <meta name="viewport" content="width=device-width, initial-scale=1.0">
-                    <title>%s</title>
-                </head>
-                <body>
-                    <h1>%s</h1>
-                    <!-- TODO: Add content -->
-                </body>
-                </html>
-                """, title, title);
-    }
-
-    private static String generatePomXml() {
-        return """
-                <?xml version="1.0" encoding="UTF-8"?>
-                <project xmlns="http://maven.apache.org/POM/4.0.0"
-                         xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
-                         xsi:schemaLocation="http://maven.apache.org/POM/4.0.0 
-                         http://maven.apache.org/xsd/maven-4.0.0.xsd">
-                    <modelVersion>4.0.0</modelVersion>
-                    
-                    <groupId>com.example</groupId>
-                    <artifactId>my-project</artifactId>
-                    <version>1.0-SNAPSHOT</version>
-                    
-                    <properties>
-                        <maven.compiler.source>11</maven.compiler.source>
-                        <maven.compiler.target>11</maven.compiler.target>
-                        <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>
-                    </properties>
-                    
-                    <dependencies>
-                        <!-- TODO: Add dependencies -->
-                    </dependencies>
-                </project>
-                """;
-    }
-
-    private static String generateBuildGradle() {
-        return """
-                plugins {
-                    id 'java'
-                }
-                
-                group 'com.example'
-                version '1.0-SNAPSHOT'
-                
-                java {
-                    sourceCompatibility = JavaVersion.VERSION_11
-                    targetCompatibility = JavaVersion.VERSION_11
-                }
-                
-                repositories {
-                    mavenCentral()
-                }
-                
-                dependencies {
-                    // TODO: Add dependencies
-                }
-                
-                test {
-                    useJUnitPlatform()
-                }
-                """;
+        return HtmlTemplate.PAGE.render(title);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,493 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the generated tree straight into a git repository as a single commit, without
+ * a working copy and without the git binary. Every file becomes a blob as it is
+ * written; on {@link #commit()} the trees and the commit follow, and the branch HEAD
+ * points to is moved to the new commit.
+ *
+ * <p>All objects go into one packfile with a version 2 index, so a project of any size
+ * costs two files in objects/pack rather than one file per object. The pack is written
+ * in one pass; only its checksum needs a second, sequential read.</p>
+ *
+ * <p>A target that does not hold a repository yet is initialized as a bare one, or as
+ * a regular one when it is named ".git". In an existing repository the commit gets the
+ * current branch head as parent, but its tree holds only the generated files. Git does
+ * not track directories, so empty ones are left out.</p>
+ *
+ * <p>Not thread-safe; like archives, it is written from a single thread.</p>
+ */
+public class GitObjectSink implements OutputSink {
+    private static final String DEFAULT_BRANCH = "refs/heads/main";
+    private static final String MESSAGE = "Generate project structure\n";
+    private static final String DEFAULT_NAME = "Project Generator";
+    private static final String DEFAULT_EMAIL = "generator@localhost";
+
+    private static final int COMMIT = 1;
+    private static final int TREE = 2;
+    private static final int BLOB = 3;
+    private static final String[] TYPE_NAMES = {null, "commit", "tree", "blob"};
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path gitDir;
+    private final boolean overwrite;
+    private final FileTime fixedTime;
+    private final Directory root = new Directory();
+
+    // Packed objects by hex id; pack and index are written to temporary files first
+    private final Map<String, PackedObject> packed = new HashMap<>();
+    private final Path packFile;
+    private final Path indexFile;
+    private final CountingOutputStream pack;
+    // Git's own level for loose objects; git gc recompresses if size matters more
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] buffer = new byte[64 * 1024];
+    private final MessageDigest sha1 = sha1();
+
+    private String commitId;
+    private String branch;
+    private String packName;
+    private int emptyDirectories;
+    private boolean committed;
+
+    private record PackedObject(byte[] id, long offset, int crc) {
+    }
+
+    // Generated directory; file values are blob ids
+    private static final class Directory {
+        final Map<String, Directory> directories = new HashMap<>();
+        final Map<String, byte[]> files = new HashMap<>();
+    }
+
+    /**
+     * @param overwrite whether a later write to the same path replaces the earlier one
+     * @param fixedTime author and committer time, or null for the time of the commit
+     */
+    public GitObjectSink(Path gitDir, boolean overwrite, FileTime fixedTime) throws IOException {
+        this.gitDir = gitDir;
+        this.overwrite = overwrite;
+        this.fixedTime = fixedTime;
+
+        if (!Files.exists(gitDir.resolve("HEAD"))) {
+            initialize();
+        }
+        Path packDirectory = Files.createDirectories(gitDir.resolve("objects").resolve("pack"));
+        String suffix = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1);
+        this.packFile = packDirectory.resolve("tmp_pack_" + suffix);
+        this.indexFile = packDirectory.resolve("tmp_idx_" + suffix);
+        this.pack = new CountingOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(packFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 64 * 1024));
+
+        // Signature, version and an object count that is filled in on commit
+        pack.write(new byte[]{'P', 'A', 'C', 'K', 0, 0, 0, 2, 0, 0, 0, 0});
+    }
+
+    private void initialize() throws IOException {
+        Files.createDirectories(gitDir.resolve("objects").resolve("info"));
+        Files.createDirectories(gitDir.resolve("refs").resolve("heads"));
+        Files.createDirectories(gitDir.resolve("refs").resolve("tags"));
+        boolean bare = !gitDir.toAbsolutePath().normalize().endsWith(".git");
+        Files.writeString(gitDir.resolve("config"), """
+                [core]
+                \trepositoryformatversion = 0
+                \tfilemode = true
+                \tbare = %s
+                """.formatted(bare));
+        Files.writeString(gitDir.resolve("HEAD"), "ref: " + DEFAULT_BRANCH + "\n");
+    }
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        String[] names = split(path);
+        Directory dir = root;
+        boolean created = false;
+        for (String name : names) {
+            if (dir.files.containsKey(name)) {
+                throw new FileAlreadyExistsException(path, null, "A file is in the way");
+            }
+            Directory child = dir.directories.get(name);
+            if (child == null) {
+                child = new Directory();
+                dir.directories.put(name, child);
+                created = true;
+            }
+            dir = child;
+        }
+        return created;
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        String[] names = split(path);
+        if (names.length == 0) {
+            throw new IOException("Not a file path: " + path);
+        }
+        Directory dir = root;
+        for (int i = 0; i < names.length - 1; i++) {
+            if (dir.files.containsKey(names[i])) {
+                throw new FileAlreadyExistsException(path, null, "A file is in the way");
+            }
+            dir = dir.directories.computeIfAbsent(names[i], name -> new Directory());
+        }
+
+        String name = names[names.length - 1];
+        if (dir.directories.containsKey(name)) {
+            // As for a directory sink, where creating the file fails on the directory
+            if (overwrite) {
+                throw new FileSystemException(path, null, "Is a directory");
+            }
+            return false;
+        }
+        if (dir.files.containsKey(name) && !overwrite) {
+            return false;
+        }
+        dir.files.put(name, writeObject(BLOB, content));
+        return true;
+    }
+
+    private static String[] split(String path) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String name : path.replace('\\', '/').split("/")) {
+            if (name.equals("..")) {
+                // Git refuses to check out such trees
+                throw new IOException("Path leaves the repository root: " + path);
+            } else if (!name.isEmpty() && !name.equals(".")) {
+                names.add(name);
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Adds the object to the pack unless it is there already and returns its id.
+     */
+    private byte[] writeObject(int type, byte[] content) throws IOException {
+        sha1.update((TYPE_NAMES[type] + " " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+        byte[] id = sha1.digest(content);
+        String hex = HEX.formatHex(id);
+        if (packed.containsKey(hex)) {
+            return id;
+        }
+
+        long offset = pack.getCount();
+        CRC32 crc = new CRC32();
+        byte[] header = objectHeader(type, content.length);
+        pack.write(header);
+        crc.update(header);
+
+        deflater.reset();
+        deflater.setInput(content);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            pack.write(buffer, 0, length);
+            crc.update(buffer, 0, length);
+        }
+
+        packed.put(hex, new PackedObject(id, offset, (int) crc.getValue()));
+        return id;
+    }
+
+    // Type and size, 4 bits of size in the first byte and 7 in every following one
+    private static byte[] objectHeader(int type, long size) {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(10);
+        int b = (type << 4) | (int) (size & 0x0F);
+        size >>>= 4;
+        while (size != 0) {
+            header.write(b | 0x80);
+            b = (int) (size & 0x7F);
+            size >>>= 7;
+        }
+        header.write(b);
+        return header.toByteArray();
+    }
+
+    /**
+     * Writes the trees and the commit, completes and indexes the pack and moves the
+     * branch to the new commit.
+     */
+    @Override
+    public void commit() throws IOException {
+        if (committed) {
+            return;
+        }
+        byte[] tree = writeTree(root);
+
+        branch = currentBranch();
+        String ref = branch != null ? branch : "HEAD";
+        // What the ref held when the commit was built; updateRef checks it still does
+        String expected = readRef(ref);
+        String parent = branch == null ? null : expected;
+        String identity = signature("GIT_AUTHOR_NAME", "GIT_AUTHOR_EMAIL");
+        String committerIdentity = signature("GIT_COMMITTER_NAME", "GIT_COMMITTER_EMAIL");
+        long seconds = (fixedTime != null ? fixedTime.to(TimeUnit.SECONDS) : System.currentTimeMillis() / 1000);
+
+        StringBuilder commit = new StringBuilder();
+        commit.append("tree ").append(HEX.formatHex(tree)).append('\n');
+        if (parent != null) {
+            commit.append("parent ").append(parent).append('\n');
+        }
+        commit.append("author ").append(identity).append(' ').append(seconds).append(" +0000\n");
+        commit.append("committer ").append(committerIdentity).append(' ').append(seconds).append(" +0000\n");
+        commit.append('\n').append(MESSAGE);
+        commitId = HEX.formatHex(writeObject(COMMIT, commit.toString().getBytes(StandardCharsets.UTF_8)));
+
+        byte[] checksum = finishPack();
+        packName = "pack-" + HEX.formatHex(checksum);
+        writeIndex(indexFile, checksum);
+
+        // The index makes the pack visible to git, so it goes last
+        Path packDirectory = packFile.getParent();
+        Files.move(packFile, packDirectory.resolve(packName + ".pack"), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indexFile, packDirectory.resolve(packName + ".idx"), StandardCopyOption.ATOMIC_MOVE);
+        updateRef(ref, expected, commitId);
+        committed = true;
+    }
+
+    private byte[] writeTree(Directory dir) throws IOException {
+        // Git orders entries by name, comparing directory names as if they ended in '/'
+        TreeMap<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        for (Map.Entry<String, byte[]> file : dir.files.entrySet()) {
+            entries.put(file.getKey().getBytes(StandardCharsets.UTF_8), entry("100644", file.getKey(), file.getValue()));
+        }
+        for (Map.Entry<String, Directory> child : dir.directories.entrySet()) {
+            if (isEmpty(child.getValue())) {
+                emptyDirectories++;
+                continue;
+            }
+            byte[] id = writeTree(child.getValue());
+            entries.put((child.getKey() + "/").getBytes(StandardCharsets.UTF_8), entry("40000", child.getKey(), id));
+        }
+
+        ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        for (byte[] entry : entries.values()) {
+            tree.write(entry);
+        }
+        return writeObject(TREE, tree.toByteArray());
+    }
+
+    private static byte[] entry(String mode, String name, byte[] id) {
+        byte[] prefix = (mode + " " + name + "\0").getBytes(StandardCharsets.UTF_8);
+        byte[] entry = Arrays.copyOf(prefix, prefix.length + id.length);
+        System.arraycopy(id, 0, entry, prefix.length, id.length);
+        return entry;
+    }
+
+    private static boolean isEmpty(Directory dir) {
+        if (!dir.files.isEmpty()) {
+            return false;
+        }
+        for (Directory child : dir.directories.values()) {
+            if (!isEmpty(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills in the object count and appends the SHA-1 of everything before it.
+     */
+    private byte[] finishPack() throws IOException {
+        pack.close();
+        try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, packed.size()), 8);
+
+            MessageDigest digest = sha1();
+            ByteBuffer chunk = ByteBuffer.wrap(buffer);
+            channel.position(0);
+            while (channel.read(chunk.clear()) > 0) {
+                digest.update(buffer, 0, chunk.position());
+            }
+            byte[] checksum = digest.digest();
+            channel.write(ByteBuffer.wrap(checksum), channel.size());
+            return checksum;
+        }
+    }
+
+    private void writeIndex(Path index, byte[] packChecksum) throws IOException {
+        List<PackedObject> objects = new ArrayList<>(packed.size());
+        new TreeMap<>(packed).forEach((hex, object) -> objects.add(object));
+
+        MessageDigest digest = sha1();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(index, StandardOpenOption.CREATE_NEW)), digest))) {
+            out.write(new byte[]{(byte) 0xFF, 't', 'O', 'c'});
+            out.writeInt(2);
+
+            // Number of objects whose first id byte is at most the index
+            int[] fanout = new int[256];
+            for (PackedObject object : objects) {
+                fanout[object.id()[0] & 0xFF]++;
+            }
+            int total = 0;
+            for (int count : fanout) {
+                total += count;
+                out.writeInt(total);
+            }
+
+            for (PackedObject object : objects) {
+                out.write(object.id());
+            }
+            for (PackedObject object : objects) {
+                out.writeInt(object.crc());
+            }
+            List<Long> largeOffsets = new ArrayList<>();
+            for (PackedObject object : objects) {
+                if (object.offset() < 0x80000000L) {
+                    out.writeInt((int) object.offset());
+                } else {
+                    out.writeInt(0x80000000 | largeOffsets.size());
+                    largeOffsets.add(object.offset());
+                }
+            }
+            for (long offset : largeOffsets) {
+                out.writeLong(offset);
+            }
+
+            out.write(packChecksum);
+            out.flush();
+            out.write(digest.digest());
+        }
+    }
+
+    /**
+     * The branch HEAD refers to, or null if HEAD is detached.
+     */
+    private String currentBranch() throws IOException {
+        String head = Files.readString(gitDir.resolve("HEAD"), StandardCharsets.UTF_8).trim();
+        return head.startsWith("ref: ") ? head.substring(5).trim() : null;
+    }
+
+    private String readRef(String ref) throws IOException {
+        Path loose = gitDir.resolve(ref);
+        if (Files.exists(loose)) {
+            return Files.readString(loose, StandardCharsets.UTF_8).trim();
+        }
+        Path packedRefs = gitDir.resolve("packed-refs");
+        if (Files.exists(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs, StandardCharsets.UTF_8)) {
+                if (line.endsWith(" " + ref) && !line.startsWith("#") && !line.startsWith("^")) {
+                    return line.substring(0, line.indexOf(' '));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the ref from {@code expected} to {@code id} through a lock file, as git does:
+     * under the lock the ref is read again, and the update fails if it no longer holds
+     * the expected value, so a concurrent update fails instead of being lost.
+     */
+    private void updateRef(String ref, String expected, String id) throws IOException {
+        Path file = gitDir.resolve(ref);
+        Files.createDirectories(file.getParent());
+        Path lock = file.resolveSibling(file.getFileName() + ".lock");
+        try {
+            Files.createFile(lock);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Ref " + ref + " is locked by another process: " + lock, e);
+        }
+        try {
+            Files.writeString(lock, id + "\n", StandardCharsets.US_ASCII);
+            String current = readRef(ref);
+            if (!Objects.equals(current, expected)) {
+                throw new IOException("Ref " + ref + " was moved from " + (expected != null ? expected : "nothing") +
+                        " to " + current + " by another process; commit " + id + " was not referenced");
+            }
+            Files.move(lock, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(lock);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static String signature(String nameVariable, String emailVariable) {
+        String name = System.getenv(nameVariable);
+        String email = System.getenv(emailVariable);
+        return (name == null || name.isBlank() ? DEFAULT_NAME : name) + " <" +
+                (email == null || email.isBlank() ? DEFAULT_EMAIL : email) + ">";
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    @Override
+    public void report(ProgressReporter reporter) {
+        if (commitId != null) {
+            reporter.info(String.format("Git: commit %s on %s, %,d objects in %s", commitId.substring(0, 12),
+                    branch != null ? branch : "detached HEAD", packed.size(), packName));
+        }
+        if (emptyDirectories > 0) {
+            reporter.info(String.format("Git: %,d empty directories not recorded; git only tracks files",
+                    emptyDirectories));
+        }
+    }
+
+    /**
+     * Discards the pack if the sink was not committed.
+     */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        if (!committed) {
+            pack.close();
+            Files.deleteIfExists(packFile);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directory sink that regenerates incrementally using a {@link GenerationManifest}.
+ * Files whose rendered content hash matches the previous run are skipped, changed
+ * files are rewritten, and files recorded by an earlier run that the spec no longer
+ * produces are reported as stale on {@link #commit()}. Stale files are never deleted.
+ *
+ * <p>Existing files the manifest does not know about follow the sink's overwrite
+ * setting; a kept file that already has the generated content is adopted into the
+ * manifest.</p>
+ */
+public class IncrementalDirectorySink extends DirectorySink {
+    private final GenerationManifest previous;
+    private final GenerationManifest current = new GenerationManifest();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final List<String> stale = new ArrayList<>();
+
+    public IncrementalDirectorySink(Path root, boolean overwrite) throws IOException {
+        this(root, overwrite, Durability.NONE);
+    }
+
+    public IncrementalDirectorySink(Path root, boolean overwrite, Durability durability) throws IOException {
+        super(root, overwrite, durability);
+        this.previous = GenerationManifest.load(root);
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        if (path.equals(GenerationManifest.FILE_NAME)) {
+            return false;
+        }
+
+        GenerationManifest.Entry entry = new GenerationManifest.Entry(GenerationManifest.hash(content), content.length);
+        Path file = resolve(path);
+        GenerationManifest.Entry recorded = previous.get(path);
+
+        if (recorded != null) {
+            if (recorded.equals(entry) && sizeOf(file) == content.length) {
+                current.put(path, entry);
+                unchanged.incrementAndGet();
+                return false;
+            }
+            createParentDirectories(file);
+            write(file, content, true);
+            current.put(path, entry);
+            written.incrementAndGet();
+            return true;
+        }
+
+        // Not generated by an earlier run
+        createParentDirectories(file);
+        if (write(file, content, isOverwrite())) {
+            current.put(path, entry);
+            written.incrementAndGet();
+            return true;
+        }
+        if (sizeOf(file) == content.length &&
+                GenerationManifest.hash(Files.readAllBytes(file)).equals(entry.hash())) {
+            current.put(path, entry);
+            unchanged.incrementAndGet();
+        }
+        return false;
+    }
+
+    private static long sizeOf(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void commit() throws IOException {
+        for (String path : new TreeSet<>(previous.paths())) {
+            if (current.get(path) == null && exists(resolve(path))) {
+                // Carried forward so the file keeps being reported until it is removed
+                stale.add(path);
+                current.put(path, previous.get(path));
+            }
+        }
+        current.save(getRoot());
+        fileChanged(resolve(GenerationManifest.FILE_NAME));
+        super.commit();
+    }
+
+    @Override
+    public void report(ProgressReporter reporter) {
+        super.report(reporter);
+        reporter.info("Incremental generation: " + written + " written, " + unchanged + " unchanged, " +
+                stale.size() + " stale");
+        for (String path : stale) {
+            reporter.info("Stale file (no longer in spec): " + path);
+        }
+    }
+
+    public int getWrittenCount() {
+        return written.get();
+    }
+
+    public int getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    public List<String> getStalePaths() {
+        return stale;
+    }
+}
@@ -0,0 +1,102 @@
+package org.project.utils;
+
+import java.util.Map;
+
+/**
+ * Signature-only sources of the JUnit Jupiter API that generated tests use, so
+ * {@link JavaCompileCheck} can compile test stubs without JUnit on the class path.
+ * Only what a typical test touches is declared; a test using anything else fails the
+ * check with "cannot find symbol" and needs the real JUnit on the class path.
+ */
+final class JUnitStubs {
+    /**
+     * Source by binary class name.
+     */
+    static final Map<String, String> SOURCES = Map.of(
+            "org.junit.jupiter.api.Test", annotation("Test"),
+            "org.junit.jupiter.api.BeforeEach", annotation("BeforeEach"),
+            "org.junit.jupiter.api.AfterEach", annotation("AfterEach"),
+            "org.junit.jupiter.api.BeforeAll", annotation("BeforeAll"),
+            "org.junit.jupiter.api.AfterAll", annotation("AfterAll"),
+            "org.junit.jupiter.api.Disabled", """
+                    package org.junit.jupiter.api;
+
+                    public @interface Disabled {
+                        String value() default "";
+                    }
+                    """,
+            "org.junit.jupiter.api.DisplayName", """
+                    package org.junit.jupiter.api;
+
+                    public @interface DisplayName {
+                        String value();
+                    }
+                    """,
+            "org.junit.jupiter.api.function.Executable", """
+                    package org.junit.jupiter.api.function;
+
+                    @FunctionalInterface
+                    public interface Executable {
+                        void execute() throws Throwable;
+                    }
+                    """,
+            "org.junit.jupiter.api.Assertions", """
+                    package org.junit.jupiter.api;
+
+                    import java.util.function.Supplier;
+                    import org.junit.jupiter.api.function.Executable;
+
+                    public class Assertions {
+                        public static void assertTrue(boolean condition) {}
+                        public static void assertTrue(boolean condition, String message) {}
+                        public static void assertTrue(boolean condition, Supplier<String> message) {}
+                        public static void assertFalse(boolean condition) {}
+                        public static void assertFalse(boolean condition, String message) {}
+                        public static void assertFalse(boolean condition, Supplier<String> message) {}
+                        public static void assertNull(Object actual) {}
+                        public static void assertNull(Object actual, String message) {}
+                        public static void assertNotNull(Object actual) {}
+                        public static void assertNotNull(Object actual, String message) {}
+                        public static void assertEquals(int expected, int actual) {}
+                        public static void assertEquals(int expected, int actual, String message) {}
+                        public static void assertEquals(long expected, long actual) {}
+                        public static void assertEquals(long expected, long actual, String message) {}
+                        public static void assertEquals(double expected, double actual) {}
+                        public static void assertEquals(double expected, double actual, String message) {}
+                        public static void assertEquals(double expected, double actual, double delta) {}
+                        public static void assertEquals(Object expected, Object actual) {}
+                        public static void assertEquals(Object expected, Object actual, String message) {}
+                        public static void assertNotEquals(Object unexpected, Object actual) {}
+                        public static void assertNotEquals(Object unexpected, Object actual, String message) {}
+                        public static void assertSame(Object expected, Object actual) {}
+                        public static void assertNotSame(Object unexpected, Object actual) {}
+                        public static void assertArrayEquals(Object[] expected, Object[] actual) {}
+                        public static void assertArrayEquals(int[] expected, int[] actual) {}
+                        public static void assertArrayEquals(byte[] expected, byte[] actual) {}
+                        public static void assertIterableEquals(Iterable<?> expected, Iterable<?> actual) {}
+                        public static <T> T assertInstanceOf(Class<T> expectedType, Object actual) { return null; }
+                        public static <T extends Throwable> T assertThrows(Class<T> expectedType, Executable executable) { return null; }
+                        public static <T extends Throwable> T assertThrows(Class<T> expectedType, Executable executable, String message) { return null; }
+                        public static void assertDoesNotThrow(Executable executable) {}
+                        public static void assertAll(Executable... executables) {}
+                        public static <V> V fail() { return null; }
+                        public static <V> V fail(String message) { return null; }
+                    }
+                    """);
+
+    private static String annotation(String name) {
+        return """
+                package org.junit.jupiter.api;
+
+                import java.lang.annotation.*;
+
+                @Retention(RetentionPolicy.RUNTIME)
+                @Target(ElementType.METHOD)
+                public @interface %s {
+                }
+                """.formatted(name);
+    }
+
+    private JUnitStubs() {
+    }
+}
@@ -0,0 +1,397 @@
+package org.project.utils;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Checks that generated Java sources compile, in process with the JDK's compiler and
+ * without touching the disk: sources are served from memory and class files are
+ * discarded. The sources are split into one shard per core, each compiled by its own
+ * compiler task; the other shards' sources are on the source path, so references
+ * across shards resolve as in a single compilation.
+ *
+ * <p>Generated sources usually depend on libraries, e.g. Spring for the bodies
+ * extracted by {@link ProjectStructureGenerator}; pass their class path or every use
+ * is reported as an error. JUnit Jupiter, which generated test stubs use, is replaced
+ * by {@link JUnitStubs} when it is not on the class path.</p>
+ *
+ * <pre>
+ * java org.project.utils.JavaCompileCheck [--verify-classpath=PATH] &lt;spec.md|directory&gt;
+ * </pre>
+ */
+public final class JavaCompileCheck {
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    // Below this many sources per shard, another compiler task costs more than it saves
+    private static final int MIN_SHARD_SIZE = 50;
+
+    private static final List<String> COMPILER_OPTIONS = List.of("-proc:none", "-implicit:none", "-g:none",
+            "-Xlint:none", "-encoding", "UTF-8",
+            // Nothing is generated, so stop once the sources are attributed and flow-checked
+            "-XDshould-stop.ifNoError=FLOW");
+
+    /**
+     * What a check found; the diagnostics themselves go to the reporter.
+     */
+    public record Result(int files, int shards, int errors, int warnings, long nanos) {
+        public boolean passed() {
+            return errors == 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        GenerationOptions options;
+        try {
+            options = GenerationOptions.parse(args).rejectWatch("JavaCompileCheck");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            options = null;
+        }
+        if (options == null || options.getArguments().size() != 1) {
+            System.out.println("Usage: java JavaCompileCheck [options] <spec.md|directory>");
+            System.out.println("Compiles the Java sources a spec generates, or the ones below a directory.");
+            System.out.println("Example: java JavaCompileCheck --verify-classpath=$(cat cp.txt) spec.md");
+            System.out.print(GenerationOptions.usage());
+            System.exit(1);
+        }
+
+        Path source = Paths.get(options.getArguments().get(0));
+        try (ProgressReporter reporter = new ProgressReporter(options.getReportLevel())) {
+            Map<String, byte[]> files = Files.isDirectory(source) ? readSources(source) :
+                    render(Files.readString(source), BatchGenerator.Kind.AUTO);
+            if (!check(files, options.getVerifyClassPath(), reporter).passed()) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks the Java sources a run generated, as captured by a {@link SourceCapture}.
+     * Used by the generators for --verify-java, after the output is complete.
+     *
+     * @throws IOException if a source does not compile
+     */
+    static void verify(SourceCapture capture, GenerationOptions options, ProgressReporter reporter)
+            throws IOException {
+        Result result = check(capture.getSources(), options.getVerifyClassPath(), reporter);
+        if (!result.passed()) {
+            throw new IOException(result.errors() + " compile errors in the generated Java sources");
+        }
+    }
+
+    /**
+     * Decorates the sink of a run to keep the content of every .java file handed to it,
+     * so the check sees exactly what the run generated without rendering the spec again.
+     * Kept files are captured with their generated content as well.
+     */
+    static final class SourceCapture implements OutputSink {
+        private final OutputSink sink;
+        private final Map<String, byte[]> sources = new ConcurrentSkipListMap<>();
+
+        SourceCapture(OutputSink sink) {
+            this.sink = sink;
+        }
+
+        Map<String, byte[]> getSources() {
+            return sources;
+        }
+
+        @Override
+        public boolean supportsConcurrentWrites() {
+            return sink.supportsConcurrentWrites();
+        }
+
+        @Override
+        public boolean createDirectory(String path) throws IOException {
+            return sink.createDirectory(path);
+        }
+
+        @Override
+        public boolean writeFile(String path, byte[] content) throws IOException {
+            boolean written = sink.writeFile(path, content);
+            if (path.endsWith(".java")) {
+                sources.put(path, content);
+            }
+            return written;
+        }
+
+        @Override
+        public void commit() throws IOException {
+            sink.commit();
+        }
+
+        @Override
+        public void report(ProgressReporter reporter) {
+            sink.report(reporter);
+        }
+
+        @Override
+        public void close() throws IOException {
+            sink.close();
+        }
+    }
+
+    /**
+     * Renders a spec into memory and returns the generated files by path.
+     */
+    public static Map<String, byte[]> render(String spec, BatchGenerator.Kind kind) throws IOException {
+        return BatchGenerator.renderSpec(spec, kind).getFiles();
+    }
+
+    /**
+     * Reads the .java files below a directory, by path relative to it.
+     */
+    public static Map<String, byte[]> readSources(Path directory) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) paths::iterator) {
+                if (file.getFileName().toString().endsWith(".java") && Files.isRegularFile(file)) {
+                    files.put(directory.relativize(file).toString().replace('\\', '/'), Files.readAllBytes(file));
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Compiles the .java entries of the files and reports every error as a warning
+     * line and every compiler warning as an info line.
+     *
+     * @param classPath class path for the libraries the sources use, or null for the
+     *                  class path of this process
+     */
+    public static Result check(Map<String, byte[]> files, String classPath, ProgressReporter reporter)
+            throws IOException {
+        long start = System.nanoTime();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No Java compiler available; the compile check needs a JDK, not a JRE");
+        }
+
+        List<Source> sources = new ArrayList<>();
+        for (Map.Entry<String, byte[]> file : new TreeMap<>(files).entrySet()) {
+            if (file.getKey().endsWith(".java")) {
+                sources.add(Source.of(file.getKey(), new String(file.getValue(), StandardCharsets.UTF_8)));
+            }
+        }
+        if (sources.isEmpty()) {
+            reporter.info("Java compile check: passed, there are no Java sources to compile");
+            return new Result(0, 0, 0, 0, System.nanoTime() - start);
+        }
+
+        List<String> options = new ArrayList<>(COMPILER_OPTIONS);
+        if (classPath != null) {
+            options.addAll(List.of("-classpath", classPath));
+        }
+
+        // Everything a shard may refer to: all generated sources, and JUnit unless it is
+        // on the class path
+        Map<String, List<Source>> sourcePath = new HashMap<>();
+        for (Source source : sources) {
+            sourcePath.computeIfAbsent(source.packageName, name -> new ArrayList<>()).add(source);
+        }
+        if (!hasJUnit(compiler, options)) {
+            for (Map.Entry<String, String> stub : JUnitStubs.SOURCES.entrySet()) {
+                Source source = Source.of(stub.getKey().replace('.', '/') + ".java", stub.getValue());
+                sourcePath.computeIfAbsent(source.packageName, name -> new ArrayList<>()).add(source);
+            }
+        }
+
+        int shardCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                sources.size() / MIN_SHARD_SIZE));
+        List<List<Source>> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            shards.get(i % shardCount).add(sources.get(i));
+        }
+
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(shardCount, task -> {
+            Thread thread = new Thread(task, "compile-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<Diagnostic<? extends JavaFileObject>>>> results = new ArrayList<>();
+            for (List<Source> shard : shards) {
+                results.add(executor.submit(() -> compile(compiler, shard, sourcePath, options)));
+            }
+            for (Future<List<Diagnostic<? extends JavaFileObject>>> result : results) {
+                diagnostics.addAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compile check interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Compile check failed: " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int errors = 0;
+        int warnings = 0;
+        diagnostics.sort(Comparator.comparing((Diagnostic<? extends JavaFileObject> d) ->
+                d.getSource() == null ? "" : d.getSource().getName()).thenComparingLong(Diagnostic::getLineNumber));
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+                reporter.warn(describe(diagnostic));
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING ||
+                    diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                warnings++;
+                reporter.info(describe(diagnostic));
+            }
+        }
+
+        Result result = new Result(sources.size(), shardCount, errors, warnings, System.nanoTime() - start);
+        reporter.info(String.format("Java compile check: %,d files in %d shards, %,d errors, %,d warnings in %d ms",
+                result.files(), result.shards(), result.errors(), result.warnings(),
+                TimeUnit.NANOSECONDS.toMillis(result.nanos())));
+        return result;
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(JavaCompiler compiler, List<Source> shard,
+                                                                     Map<String, List<Source>> sourcePath,
+                                                                     List<String> options) throws IOException {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        // File managers are not thread-safe, so every shard has its own
+        try (MemoryFileManager fileManager = new MemoryFileManager(
+                compiler.getStandardFileManager(collector, Locale.ROOT, StandardCharsets.UTF_8), sourcePath)) {
+            compiler.getTask(null, fileManager, collector, options, null, shard).call();
+        }
+        return collector.getDiagnostics();
+    }
+
+    private static boolean hasJUnit(JavaCompiler compiler, List<String> options) throws IOException {
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ROOT,
+                StandardCharsets.UTF_8)) {
+            int classPath = options.indexOf("-classpath");
+            if (classPath >= 0) {
+                fileManager.handleOption("-classpath", List.of(options.get(classPath + 1)).iterator());
+            }
+            return fileManager.list(StandardLocation.CLASS_PATH, "org.junit.jupiter.api",
+                    Set.of(JavaFileObject.Kind.CLASS), false).iterator().hasNext();
+        }
+    }
+
+    private static String describe(Diagnostic<? extends JavaFileObject> diagnostic) {
+        String message = diagnostic.getMessage(Locale.ROOT);
+        int newline = message.indexOf('\n');
+        if (newline >= 0) {
+            message = message.substring(0, newline);
+        }
+        if (diagnostic.getSource() == null) {
+            return message;
+        }
+        String path = diagnostic.getSource() instanceof Source source ? source.path : diagnostic.getSource().getName();
+        return path + ":" + diagnostic.getLineNumber() + ": " + message;
+    }
+
+    /**
+     * A source held in memory, named by its generated path.
+     */
+    private static final class Source extends SimpleJavaFileObject {
+        final String path;
+        final String packageName;
+        final String binaryName;
+        private final String code;
+
+        private Source(URI uri, String path, String packageName, String code) {
+            super(uri, Kind.SOURCE);
+            this.path = path;
+            this.packageName = packageName;
+            String fileName = path.substring(path.lastIndexOf('/') + 1);
+            String simpleName = fileName.substring(0, fileName.length() - Kind.SOURCE.extension.length());
+            this.binaryName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+            this.code = code;
+        }
+
+        static Source of(String path, String code) throws IOException {
+            Matcher matcher = PACKAGE_PATTERN.matcher(code);
+            String packageName = matcher.find() ? matcher.group(1) : "";
+            try {
+                return new Source(new URI("memory", null, "/" + path, null), path, packageName, code);
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid source path: " + path, e);
+            }
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Serves the source path from memory and discards compiler output.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, List<Source>> sourcePath;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, List<Source>> sourcePath) {
+            super(fileManager);
+            this.sourcePath = sourcePath;
+        }
+
+        @Override
+        public boolean hasLocation(Location location) {
+            return location == StandardLocation.SOURCE_PATH || super.hasLocation(location);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                                             boolean recurse) throws IOException {
+            if (location != StandardLocation.SOURCE_PATH) {
+                return super.list(location, packageName, kinds, recurse);
+            }
+            if (!kinds.contains(JavaFileObject.Kind.SOURCE)) {
+                return List.of();
+            }
+            List<JavaFileObject> found = new ArrayList<>(sourcePath.getOrDefault(packageName, List.of()));
+            if (recurse) {
+                sourcePath.forEach((name, sources) -> {
+                    if (name.startsWith(packageName + ".")) {
+                        found.addAll(sources);
+                    }
+                });
+            }
+            return found;
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            return file instanceof Source source ? source.binaryName : super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public boolean isSameFile(FileObject a, FileObject b) {
+            return a instanceof Source || b instanceof Source ? a == b : super.isSameFile(a, b);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("discarded:///" + className.replace('.', '/') + kind.extension),
+                    kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return OutputStream.nullOutputStream();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A file system that keeps every directory and file in memory. The working
+ * directory is the root, so relative paths resolve against "/".
+ *
+ * <p>Lookups are lock-free; structural changes (create, delete, move) are
+ * serialised per file system, while file contents are guarded per file. Each
+ * instance is independent, so separate generations never contend with each other.</p>
+ */
+public class MemoryFileSystem extends FileSystem {
+    private final MemoryFileSystemProvider provider;
+    private final String name;
+    private final DirectoryNode root = new DirectoryNode();
+    private final Object structureLock = new Object();
+    private volatile boolean open = true;
+
+    MemoryFileSystem(MemoryFileSystemProvider provider, String name) {
+        this.provider = provider;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            root.children.clear();
+            provider.remove(name);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return List.of(getPath("/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return List.of();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public MemoryPath getPath(String first, String... more) {
+        StringBuilder path = new StringBuilder(first);
+        for (String part : more) {
+            if (!part.isEmpty()) {
+                if (!path.isEmpty()) {
+                    path.append('/');
+                }
+                path.append(part);
+            }
+        }
+        return MemoryPath.parse(this, path.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected syntax:pattern but got " + syntaxAndPattern);
+        }
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(globToRegex(pattern));
+        } else {
+            throw new UnsupportedOperationException("Syntax not supported: " + syntax);
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '{' -> {
+                    regex.append("(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    regex.append(')');
+                    inGroup = false;
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '.', '(', ')', '+', '|', '^', '$', '@', '%', '\\' -> regex.append('\\').append(c);
+                default -> regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("User principals are not supported by the in-memory file system");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Watching is not supported by the in-memory file system");
+    }
+
+    // Node lookup and structural changes used by MemoryFileSystemProvider
+
+    Node lookup(MemoryPath path) throws IOException {
+        checkOpen();
+        Node node = root;
+        for (String name : ((MemoryPath) path.toAbsolutePath().normalize()).names()) {
+            if (!(node instanceof DirectoryNode directory) || (node = directory.children.get(name)) == null) {
+                throw new NoSuchFileException(path.toString());
+            }
+        }
+        return node;
+    }
+
+    Node find(MemoryPath path) {
+        try {
+            return lookup(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    DirectoryNode parentOf(MemoryPath path) throws IOException {
+        MemoryPath absolute = (MemoryPath) path.toAbsolutePath().normalize();
+        if (absolute.getNameCount() == 0) {
+            throw new FileSystemException(path.toString(), null, "Operation not permitted on the root directory");
+        }
+        Node parent = lookup((MemoryPath) absolute.getParent());
+        if (!(parent instanceof DirectoryNode directory)) {
+            throw new NoSuchFileException(path.toString(), null, "Parent is not a directory");
+        }
+        return directory;
+    }
+
+    static String nameOf(MemoryPath path) {
+        String[] names = ((MemoryPath) path.toAbsolutePath().normalize()).names();
+        return names[names.length - 1];
+    }
+
+    /**
+     * Adds a node under the path's parent, failing if an entry already exists.
+     */
+    void add(MemoryPath path, Node node) throws IOException {
+        synchronized (structureLock) {
+            DirectoryNode parent = parentOf(path);
+            if (parent.children.putIfAbsent(nameOf(path), node) != null) {
+                throw new FileAlreadyExistsException(path.toString());
+            }
+            parent.touch();
+        }
+    }
+
+    FileNode getOrCreateFile(MemoryPath path, boolean create, boolean createNew) throws IOException {
+        synchronized (structureLock) {
+            DirectoryNode parent = parentOf(path);
+            Node existing = parent.children.get(nameOf(path));
+            if (existing != null) {
+                if (createNew) {
+                    throw new FileAlreadyExistsException(path.toString());
+                }
+                if (existing instanceof DirectoryNode) {
+                    throw new FileSystemException(path.toString(), null, "Is a directory");
+                }
+                return (FileNode) existing;
+            }
+            if (!create && !createNew) {
+                throw new NoSuchFileException(path.toString());
+            }
+            FileNode file = new FileNode();
+            parent.children.put(nameOf(path), file);
+            parent.touch();
+            return file;
+        }
+    }
+
+    void delete(MemoryPath path) throws IOException {
+        synchronized (structureLock) {
+            DirectoryNode parent = parentOf(path);
+            String name = nameOf(path);
+            Node node = parent.children.get(name);
+            if (node == null) {
+                throw new NoSuchFileException(path.toString());
+            }
+            if (node instanceof DirectoryNode directory && !directory.children.isEmpty()) {
+                throw new DirectoryNotEmptyException(path.toString());
+            }
+            parent.children.remove(name);
+            parent.touch();
+        }
+    }
+
+    /**
+     * Moves a file or a whole directory subtree. The move is a single step under the
+     * structure lock, so it is always atomic.
+     */
+    void move(MemoryPath source, MemoryPath target, boolean replaceExisting) throws IOException {
+        synchronized (structureLock) {
+            DirectoryNode sourceParent = parentOf(source);
+            Node node = sourceParent.children.get(nameOf(source));
+            if (node == null) {
+                throw new NoSuchFileException(source.toString());
+            }
+            if (target.toAbsolutePath().normalize().startsWith(source.toAbsolutePath().normalize()) &&
+                    !target.toAbsolutePath().normalize().equals(source.toAbsolutePath().normalize())) {
+                throw new FileSystemException(source.toString(), target.toString(), "Cannot move a directory into itself");
+            }
+
+            DirectoryNode targetParent = parentOf(target);
+            Node existing = targetParent.children.get(nameOf(target));
+            if (existing == node) {
+                return;
+            }
+            if (existing != null) {
+                if (!replaceExisting) {
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+                if (existing instanceof DirectoryNode directory && !directory.children.isEmpty()) {
+                    throw new DirectoryNotEmptyException(target.toString());
+                }
+            }
+
+            sourceParent.children.remove(nameOf(source));
+            targetParent.children.put(nameOf(target), node);
+            sourceParent.touch();
+            targetParent.touch();
+        }
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    // In-memory nodes
+
+    abstract static class Node {
+        volatile FileTime creationTime = FileTime.fromMillis(System.currentTimeMillis());
+        volatile FileTime lastModifiedTime = creationTime;
+        volatile FileTime lastAccessTime = creationTime;
+
+        void touch() {
+            lastModifiedTime = FileTime.fromMillis(System.currentTimeMillis());
+        }
+
+        abstract long size();
+
+        BasicFileAttributes attributes() {
+            Node node = this;
+            return new BasicFileAttributes() {
+                @Override
+                public FileTime lastModifiedTime() {
+                    return node.lastModifiedTime;
+                }
+
+                @Override
+                public FileTime lastAccessTime() {
+                    return node.lastAccessTime;
+                }
+
+                @Override
+                public FileTime creationTime() {
+                    return node.creationTime;
+                }
+
+                @Override
+                public boolean isRegularFile() {
+                    return node instanceof FileNode;
+                }
+
+                @Override
+                public boolean isDirectory() {
+                    return node instanceof DirectoryNode;
+                }
+
+                @Override
+                public boolean isSymbolicLink() {
+                    return false;
+                }
+
+                @Override
+                public boolean isOther() {
+                    return false;
+                }
+
+                @Override
+                public long size() {
+                    return node.size();
+                }
+
+                @Override
+                public Object fileKey() {
+                    return node;
+                }
+            };
+        }
+
+        void setTimes(FileTime lastModified, FileTime lastAccess, FileTime creation) {
+            if (lastModified != null) {
+                lastModifiedTime = lastModified;
+            }
+            if (lastAccess != null) {
+                lastAccessTime = lastAccess;
+            }
+            if (creation != null) {
+                creationTime = creation;
+            }
+        }
+    }
+
+    static final class DirectoryNode extends Node {
+        final Map<String, Node> children = new ConcurrentHashMap<>();
+
+        @Override
+        long size() {
+            return 0;
+        }
+    }
+
+    static final class FileNode extends Node {
+        private byte[] data = new byte[0];
+        private int size;
+
+        @Override
+        synchronized long size() {
+            return size;
+        }
+
+        synchronized byte[] snapshot() {
+            return Arrays.copyOf(data, size);
+        }
+
+        synchronized int read(long position, java.nio.ByteBuffer dst) {
+            if (position >= size) {
+                return -1;
+            }
+            int count = (int) Math.min(dst.remaining(), size - position);
+            dst.put(data, (int) position, count);
+            lastAccessTime = FileTime.fromMillis(System.currentTimeMillis());
+            return count;
+        }
+
+        synchronized int write(long position, java.nio.ByteBuffer src) {
+            int count = src.remaining();
+            long end = position + count;
+            if (end > Integer.MAX_VALUE) {
+                throw new OutOfMemoryError("In-memory files are limited to 2 GB");
+            }
+            if (end > data.length) {
+                data = Arrays.copyOf(data, (int) Math.max(end, Math.min(Integer.MAX_VALUE, data.length * 2L)));
+            }
+            if (position > size) {
+                Arrays.fill(data, size, (int) position, (byte) 0);
+            }
+            src.get(data, (int) position, count);
+            size = (int) Math.max(size, end);
+            touch();
+            return count;
+        }
+
+        synchronized void truncate(long newSize) {
+            if (newSize < size) {
+                size = (int) newSize;
+                touch();
+            }
+        }
+
+        synchronized void copyFrom(FileNode other) {
+            byte[] content = other.snapshot();
+            data = content;
+            size = content.length;
+            touch();
+        }
+    }
+}
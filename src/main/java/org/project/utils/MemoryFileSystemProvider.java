@@ -0,0 +1,399 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provider for the "memory" URI scheme. File systems are addressed as
+ * {@code memory:<name>} and paths within them as {@code memory:<name>!/path}.
+ *
+ * <pre>
+ * try (FileSystem fs = MemoryFileSystemProvider.newFileSystem()) {
+ *     GenericProjectStructureGenerator.generateProjectStructure(Paths.get("spec.md"), fs.getPath("/out"));
+ * }
+ * </pre>
+ */
+public class MemoryFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "memory";
+
+    // Shared by every provider instance so installed and directly created providers agree
+    private static final Map<String, MemoryFileSystem> FILE_SYSTEMS = new ConcurrentHashMap<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final MemoryFileSystemProvider INSTANCE = new MemoryFileSystemProvider();
+
+    /**
+     * Creates a new, uniquely named in-memory file system. Closing it releases all its content.
+     */
+    public static MemoryFileSystem newFileSystem() {
+        String name = "fs-" + NEXT_ID.incrementAndGet();
+        MemoryFileSystem fileSystem = new MemoryFileSystem(INSTANCE, name);
+        FILE_SYSTEMS.put(name, fileSystem);
+        return fileSystem;
+    }
+
+    void remove(String name) {
+        FILE_SYSTEMS.remove(name);
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        String name = fileSystemName(uri);
+        MemoryFileSystem fileSystem = new MemoryFileSystem(this, name);
+        if (FILE_SYSTEMS.putIfAbsent(name, fileSystem) != null) {
+            throw new FileSystemAlreadyExistsException(name);
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        MemoryFileSystem fileSystem = FILE_SYSTEMS.get(fileSystemName(uri));
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        String spec = uri.getSchemeSpecificPart();
+        int separator = spec.indexOf('!');
+        String path = separator < 0 ? "/" : spec.substring(separator + 1);
+        return getFileSystem(uri).getPath(path);
+    }
+
+    private static String fileSystemName(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme is not '" + SCHEME + "': " + uri);
+        }
+        String spec = uri.getSchemeSpecificPart();
+        int separator = spec.indexOf('!');
+        return separator < 0 ? spec : spec.substring(0, separator);
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options,
+                                              FileAttribute<?>... attrs) throws IOException {
+        MemoryPath memoryPath = toMemoryPath(path);
+        MemoryFileSystem fileSystem = memoryPath.getFileSystem();
+
+        boolean write = options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        // Readable when asked for, or when nothing else is
+        boolean readable = options.contains(StandardOpenOption.READ) || !write;
+        MemoryFileSystem.FileNode file;
+        if (write) {
+            file = fileSystem.getOrCreateFile(memoryPath, options.contains(StandardOpenOption.CREATE),
+                    options.contains(StandardOpenOption.CREATE_NEW));
+            if (options.contains(StandardOpenOption.TRUNCATE_EXISTING) && !append) {
+                file.truncate(0);
+            }
+        } else {
+            MemoryFileSystem.Node node = fileSystem.lookup(memoryPath);
+            if (!(node instanceof MemoryFileSystem.FileNode fileNode)) {
+                throw new FileSystemException(path.toString(), null, "Is a directory");
+            }
+            file = fileNode;
+        }
+        return new MemoryChannel(file, readable, write, append);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        MemoryPath memoryPath = toMemoryPath(dir);
+        MemoryFileSystem.Node node = memoryPath.getFileSystem().lookup(memoryPath);
+        if (!(node instanceof MemoryFileSystem.DirectoryNode directory)) {
+            throw new NotDirectoryException(dir.toString());
+        }
+
+        // Entries are snapshotted when the stream is opened
+        List<Path> entries = new ArrayList<>();
+        for (String name : directory.children.keySet()) {
+            Path entry = dir.resolve(name);
+            if (filter == null || filter.accept(entry)) {
+                entries.add(entry);
+            }
+        }
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        MemoryPath memoryPath = toMemoryPath(dir);
+        memoryPath.getFileSystem().add(memoryPath, new MemoryFileSystem.DirectoryNode());
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        MemoryPath memoryPath = toMemoryPath(path);
+        memoryPath.getFileSystem().delete(memoryPath);
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        MemoryPath from = toMemoryPath(source);
+        MemoryPath to = toMemoryPath(target);
+        MemoryFileSystem.Node node = from.getFileSystem().lookup(from);
+        boolean replace = Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING);
+
+        if (to.getFileSystem().find(to) != null) {
+            if (!replace) {
+                throw new FileAlreadyExistsException(target.toString());
+            }
+            delete(to);
+        }
+        if (node instanceof MemoryFileSystem.FileNode file) {
+            to.getFileSystem().getOrCreateFile(to, false, true).copyFrom(file);
+        } else {
+            createDirectory(to);
+        }
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        MemoryPath from = toMemoryPath(source);
+        MemoryPath to = toMemoryPath(target);
+        if (from.getFileSystem() != to.getFileSystem()) {
+            throw new ProviderMismatchException("Cannot move between in-memory file systems");
+        }
+        boolean replace = Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING);
+        from.getFileSystem().move(from, to, replace);
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path2 instanceof MemoryPath other)) {
+            return false;
+        }
+        MemoryPath memoryPath = toMemoryPath(path);
+        return memoryPath.getFileSystem().lookup(memoryPath) == other.getFileSystem().lookup(other);
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        throw new UnsupportedOperationException("File stores are not supported by the in-memory file system");
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        MemoryPath memoryPath = toMemoryPath(path);
+        memoryPath.getFileSystem().lookup(memoryPath);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        MemoryPath memoryPath = toMemoryPath(path);
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return memoryPath.getFileSystem().lookup(memoryPath).attributes();
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime)
+                    throws IOException {
+                memoryPath.getFileSystem().lookup(memoryPath).setTimes(lastModifiedTime, lastAccessTime, createTime);
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+            throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException("Only basic file attributes are supported");
+        }
+        MemoryPath memoryPath = toMemoryPath(path);
+        return (A) memoryPath.getFileSystem().lookup(memoryPath).attributes();
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options)
+            throws IOException {
+        String names = attributes;
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            if (!attributes.substring(0, colon).equals("basic")) {
+                throw new UnsupportedOperationException("Only basic file attributes are supported");
+            }
+            names = attributes.substring(colon + 1);
+        }
+
+        BasicFileAttributes basic = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("lastModifiedTime", basic.lastModifiedTime());
+        all.put("lastAccessTime", basic.lastAccessTime());
+        all.put("creationTime", basic.creationTime());
+        all.put("size", basic.size());
+        all.put("isRegularFile", basic.isRegularFile());
+        all.put("isDirectory", basic.isDirectory());
+        all.put("isSymbolicLink", basic.isSymbolicLink());
+        all.put("isOther", basic.isOther());
+        all.put("fileKey", basic.fileKey());
+
+        if (names.equals("*")) {
+            return all;
+        }
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            if (!all.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown attribute: " + name);
+            }
+            selected.put(name, all.get(name));
+        }
+        return selected;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        String name = attribute.startsWith("basic:") ? attribute.substring("basic:".length()) : attribute;
+        BasicFileAttributeView view = getFileAttributeView(path, BasicFileAttributeView.class, options);
+        switch (name) {
+            case "lastModifiedTime" -> view.setTimes((FileTime) value, null, null);
+            case "lastAccessTime" -> view.setTimes(null, (FileTime) value, null);
+            case "creationTime" -> view.setTimes(null, null, (FileTime) value);
+            default -> throw new UnsupportedOperationException("Attribute cannot be set: " + attribute);
+        }
+    }
+
+    private static MemoryPath toMemoryPath(Path path) {
+        if (!(path instanceof MemoryPath memoryPath)) {
+            throw new ProviderMismatchException("Not an in-memory path: " + path);
+        }
+        return memoryPath;
+    }
+
+    /**
+     * Byte channel over a single in-memory file.
+     */
+    private static final class MemoryChannel implements SeekableByteChannel {
+        private final MemoryFileSystem.FileNode file;
+        private final boolean readable;
+        private final boolean writable;
+        private final boolean append;
+        private long position;
+        private boolean open = true;
+
+        MemoryChannel(MemoryFileSystem.FileNode file, boolean readable, boolean writable, boolean append) {
+            this.file = file;
+            this.readable = readable;
+            this.writable = writable;
+            this.append = append;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            checkOpen();
+            if (!readable) {
+                throw new NonReadableChannelException();
+            }
+            int count = file.read(position, dst);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            checkOpen();
+            if (!writable) {
+                throw new NonWritableChannelException();
+            }
+            if (append) {
+                position = file.size();
+            }
+            int count = file.write(position, src);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long position() throws IOException {
+            checkOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            checkOpen();
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            checkOpen();
+            return file.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            checkOpen();
+            if (!writable) {
+                throw new NonWritableChannelException();
+            }
+            file.truncate(size);
+            position = Math.min(position, size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void checkOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * {@link Path} implementation for {@link MemoryFileSystem}. Paths are '/'-separated
+ * and immutable; a path is absolute when it starts with '/'.
+ */
+final class MemoryPath implements Path {
+    private final MemoryFileSystem fileSystem;
+    private final boolean absolute;
+    private final String[] names;
+
+    private MemoryPath(MemoryFileSystem fileSystem, boolean absolute, String[] names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    static MemoryPath parse(MemoryFileSystem fileSystem, String path) {
+        if (path.indexOf('\0') >= 0) {
+            throw new InvalidPathException(path, "Nul character not allowed");
+        }
+        List<String> parts = new ArrayList<>();
+        for (String part : path.split("/")) {
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return new MemoryPath(fileSystem, path.startsWith("/"), parts.toArray(new String[0]));
+    }
+
+    String[] names() {
+        return names;
+    }
+
+    @Override
+    public MemoryFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public Path getRoot() {
+        return absolute ? new MemoryPath(fileSystem, true, new String[0]) : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        return names.length == 0 ? null : new MemoryPath(fileSystem, false, new String[]{names[names.length - 1]});
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.length == 0 || (names.length == 1 && !absolute)) {
+            return null;
+        }
+        return new MemoryPath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        if (index < 0 || index >= names.length) {
+            throw new IllegalArgumentException("Invalid name index: " + index);
+        }
+        return new MemoryPath(fileSystem, false, new String[]{names[index]});
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath: " + beginIndex + ".." + endIndex);
+        }
+        return new MemoryPath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof MemoryPath that) || that.fileSystem != fileSystem ||
+                that.absolute != absolute || that.names.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < that.names.length; i++) {
+            if (!names[i].equals(that.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof MemoryPath that) || that.fileSystem != fileSystem ||
+                that.names.length > names.length || (that.absolute && !equals(that))) {
+            return false;
+        }
+        int offset = names.length - that.names.length;
+        for (int i = 0; i < that.names.length; i++) {
+            if (!names[offset + i].equals(that.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Path normalize() {
+        Deque<String> parts = new ArrayDeque<>();
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..") && !parts.isEmpty() && !parts.peekLast().equals("..")) {
+                parts.removeLast();
+            } else if (!name.equals("..") || !absolute) {
+                parts.addLast(name);
+            }
+        }
+        return new MemoryPath(fileSystem, absolute, parts.toArray(new String[0]));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        MemoryPath that = checkPath(other);
+        if (that.absolute) {
+            return that;
+        }
+        if (that.names.length == 0) {
+            return this;
+        }
+        String[] combined = Arrays.copyOf(names, names.length + that.names.length);
+        System.arraycopy(that.names, 0, combined, names.length, that.names.length);
+        return new MemoryPath(fileSystem, absolute, combined);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        MemoryPath that = checkPath(other);
+        if (that.absolute != absolute) {
+            throw new IllegalArgumentException("Cannot relativize '" + other + "' against '" + this + "'");
+        }
+        int common = 0;
+        while (common < names.length && common < that.names.length && names[common].equals(that.names[common])) {
+            common++;
+        }
+        List<String> parts = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            parts.add("..");
+        }
+        parts.addAll(Arrays.asList(that.names).subList(common, that.names.length));
+        return new MemoryPath(fileSystem, false, parts.toArray(new String[0]));
+    }
+
+    @Override
+    public URI toUri() {
+        return URI.create(MemoryFileSystemProvider.SCHEME + ":" + fileSystem.getName() + "!" +
+                toAbsolutePath().toString());
+    }
+
+    @Override
+    public MemoryPath toAbsolutePath() {
+        return absolute ? this : new MemoryPath(fileSystem, true, names);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        MemoryPath real = (MemoryPath) toAbsolutePath().normalize();
+        fileSystem.lookup(real);
+        return real;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Watching is not supported by the in-memory file system");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(other.toString());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MemoryPath that && that.fileSystem == fileSystem &&
+                that.absolute == absolute && Arrays.equals(that.names, names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(names) * 31 + (absolute ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        String joined = String.join("/", names);
+        return absolute ? "/" + joined : joined;
+    }
+
+    private MemoryPath checkPath(Path other) {
+        if (!(other instanceof MemoryPath that) || that.fileSystem != fileSystem) {
+            throw new ProviderMismatchException("Path does not belong to " + fileSystem.getName());
+        }
+        return that;
+    }
+}
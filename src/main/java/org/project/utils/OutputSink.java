@@ -0,0 +1,127 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Destination for generated projects. Paths handed to a sink are relative to the
+ * output root and always use '/' as separator, so the same generator code can
+ * write to a directory or stream straight into an archive.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * Creates a directory entry.
+     *
+     * @return false if the directory already existed
+     */
+    boolean createDirectory(String path) throws IOException;
+
+    /**
+     * Writes a file entry, creating any missing parent directories first.
+     *
+     * @return false if the sink kept an existing file instead of writing it
+     */
+    boolean writeFile(String path, byte[] content) throws IOException;
+
+    /**
+     * Whether entries may be written from several threads at once and in any order.
+     * Archives and repositories are built in the order their entries arrive, so by
+     * default they are not.
+     */
+    default boolean supportsConcurrentWrites() {
+        return false;
+    }
+
+    /**
+     * Marks the output as complete. Sinks that stage their output publish it here;
+     * closing a sink without committing discards whatever can be discarded.
+     */
+    default void commit() throws IOException {
+    }
+
+    /**
+     * Reports what the sink did beyond writing entries, after a commit.
+     */
+    default void report(ProgressReporter reporter) {
+    }
+
+    static OutputSink open(String target, boolean overwrite) throws IOException {
+        return open(target, overwrite, new GenerationOptions());
+    }
+
+    /**
+     * Opens the sink selected by an output target given on the command line:
+     * ".zip", ".tar" and ".tar.gz"/".tgz" targets become archives, ".git" targets a
+     * commit in that repository, anything else is treated as an output directory.
+     */
+    static OutputSink open(String target, boolean overwrite, GenerationOptions options) throws IOException {
+        return open(target, overwrite, options, StagedDirectorySink.Scope.ENTRIES);
+    }
+
+    /**
+     * @param scope what an output directory holds, and so what {@code --atomic} publishes
+     */
+    static OutputSink open(String target, boolean overwrite, GenerationOptions options,
+                           StagedDirectorySink.Scope scope) throws IOException {
+        if (isGitRepository(target)) {
+            return new GitObjectSink(Paths.get(target), overwrite, options.getFixedTime());
+        }
+        if (!isArchive(target)) {
+            return open(Paths.get(target), overwrite, options, scope);
+        }
+
+        Path archive = Paths.get(target).toAbsolutePath();
+        Files.createDirectories(archive.getParent());
+        OutputStream out = Files.newOutputStream(archive);
+        String lower = target.toLowerCase();
+        if (lower.endsWith(".zip")) {
+            return new ZipSink(out, options.getFixedTime());
+        }
+        return new TarSink(out, !lower.endsWith(".tar"), options.getFixedTime());
+    }
+
+    /**
+     * Opens a sink for an output directory on any file system.
+     */
+    static DirectorySink open(Path directory, boolean overwrite, GenerationOptions options) throws IOException {
+        return open(directory, overwrite, options, StagedDirectorySink.Scope.ENTRIES);
+    }
+
+    static DirectorySink open(Path directory, boolean overwrite, GenerationOptions options,
+                              StagedDirectorySink.Scope scope) throws IOException {
+        DirectorySink sink;
+        if (options.isAtomic()) {
+            sink = new StagedDirectorySink(directory, overwrite, options.getDurability(), scope);
+        } else if (options.isIncremental()) {
+            sink = new IncrementalDirectorySink(directory, overwrite, options.getDurability());
+        } else if (options.isResume()) {
+            sink = new ResumableDirectorySink(directory, overwrite, options.getDurability());
+        } else if (options.isSync()) {
+            sink = new SyncDirectorySink(directory, options.getSyncAllowList(), options.getPathFilter(),
+                    options.getDurability());
+        } else {
+            sink = new DirectorySink(directory, overwrite, options.getDurability());
+        }
+        return sink.setHardLinks(options.isHardLinks()).setListingCache(options.isListDirectories())
+                .setFixedTime(options.getFixedTime());
+    }
+
+    /**
+     * Whether the target names a git repository, e.g. "project.git" or "project/.git",
+     * that the output is committed to.
+     */
+    static boolean isGitRepository(String target) {
+        String normalized = target.replace('\\', '/');
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.toLowerCase().endsWith(".git");
+    }
+
+    static boolean isArchive(String target) {
+        String lower = target.toLowerCase();
+        return lower.endsWith(".zip") || lower.endsWith(".tar") ||
+                lower.endsWith(".tar.gz") || lower.endsWith(".tgz");
+    }
+}
@@ -0,0 +1,116 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Deletes directory trees on the common fork/join pool. Each directory is listed
+ * once; its subdirectories are deleted in parallel and the directory itself is
+ * removed once all of its children are gone. Symbolic links are deleted, never followed.
+ */
+public final class ParallelDelete {
+
+    private ParallelDelete() {
+    }
+
+    /**
+     * Deletes the file or directory tree at the given path. Missing paths are ignored.
+     */
+    public static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+
+        DeleteTask task = new DeleteTask(root);
+        ForkJoinPool.commonPool().invoke(task);
+        if (task.failure != null) {
+            throw task.failure;
+        }
+    }
+
+    /**
+     * Deletes several files or directory trees as one batch, all of them in parallel.
+     * Paths that are gone by the time they are reached are ignored.
+     */
+    public static void deleteTrees(Collection<Path> roots) throws IOException {
+        List<DeleteTask> tasks = roots.stream().map(DeleteTask::new).toList();
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        IOException failure = null;
+        for (DeleteTask task : tasks) {
+            if (task.failure == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = task.failure;
+            } else {
+                failure.addSuppressed(task.failure);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Never serialized, like any task
+    @SuppressWarnings("serial")
+    private static final class DeleteTask extends RecursiveAction {
+        private final Path path;
+        private IOException failure;
+
+        DeleteTask(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isDirectory()) {
+                    deleteChildren();
+                }
+                if (failure == null) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (NoSuchFileException e) {
+                // Deleted by someone else since its directory was listed
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void deleteChildren() throws IOException {
+            List<DeleteTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path entry : entries) {
+                    subtasks.add(new DeleteTask(entry));
+                }
+            }
+
+            invokeAll(subtasks);
+            for (DeleteTask subtask : subtasks) {
+                if (subtask.failure != null) {
+                    fail(subtask.failure);
+                }
+            }
+        }
+
+        private void fail(IOException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes files to an {@link OutputSink} from a thread pool, with the number of writes
+ * in flight governed by an {@link AdaptiveConcurrencyLimit} between the configured
+ * bounds. Submitting blocks while the limit is reached, so rendering never runs far
+ * ahead of the file system.
+ *
+ * <p>Only sinks that {@linkplain OutputSink#supportsConcurrentWrites() support it},
+ * i.e. directories, are written in parallel. Archives are a single stream whose entry
+ * order matters, so for them, and when the upper bound is 1, every write runs on the
+ * calling thread.</p>
+ *
+ * <p>A writer normally owns its {@link Pool}; writers for several sinks on the same
+ * file systems can share one, so a single limit governs all their writes.</p>
+ */
+public class ParallelWriter implements AutoCloseable {
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /**
+     * Receives the outcome of a write on the thread that performed it. Whatever the
+     * callback throws is rethrown by {@link #awaitCompletion()}.
+     */
+    @FunctionalInterface
+    public interface Callback {
+        void completed(boolean written, IOException failure) throws IOException;
+    }
+
+    /**
+     * Writer threads and the concurrency limit they share.
+     */
+    public static final class Pool implements AutoCloseable {
+        private final AdaptiveConcurrencyLimit limit;
+        private final ExecutorService executor;
+
+        public Pool(GenerationOptions options) {
+            this(options.getIoMin(), options.getIoMax());
+        }
+
+        public Pool(int minConcurrency, int maxConcurrency) {
+            this.limit = new AdaptiveConcurrencyLimit(minConcurrency, maxConcurrency);
+            this.executor = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "file-writer-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        public AdaptiveConcurrencyLimit getLimit() {
+            return limit;
+        }
+
+        /**
+         * Stops the writer threads once the writes in flight are done.
+         */
+        @Override
+        public void close() {
+            executor.shutdown();
+            try {
+                limit.awaitIdle();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final OutputSink sink;
+    private final Pool pool;
+    private final boolean ownsPool;
+    private final Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+    private int pending;
+
+    public ParallelWriter(OutputSink sink, GenerationOptions options) {
+        this(sink, options.getIoMin(), options.getIoMax());
+    }
+
+    public ParallelWriter(OutputSink sink, int minConcurrency, int maxConcurrency) {
+        this.sink = sink;
+        this.ownsPool = sink.supportsConcurrentWrites() && maxConcurrency > 1;
+        this.pool = ownsPool ? new Pool(minConcurrency, maxConcurrency) : null;
+    }
+
+    /**
+     * Creates a writer that submits to a shared pool, which it does not close.
+     */
+    public ParallelWriter(OutputSink sink, Pool pool) {
+        this.sink = sink;
+        this.ownsPool = false;
+        this.pool = sink.supportsConcurrentWrites() ? pool : null;
+    }
+
+    public OutputSink getSink() {
+        return sink;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Writes a file; a failure is thrown by {@link #awaitCompletion()}, or right away
+     * when writing on the calling thread.
+     */
+    public void write(String path, byte[] content) throws IOException {
+        write(path, content, (written, failure) -> {
+            if (failure != null) {
+                throw failure;
+            }
+        });
+    }
+
+    /**
+     * Writes a file and hands the outcome to the callback.
+     */
+    public void write(String path, byte[] content, Callback callback) throws IOException {
+        if (pool == null) {
+            writeNow(path, content, callback);
+            return;
+        }
+
+        AdaptiveConcurrencyLimit limit = pool.limit;
+        try {
+            limit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to write " + path);
+        }
+        started();
+        try {
+            pool.executor.execute(() -> {
+                long start = System.nanoTime();
+                boolean written = false;
+                IOException failure = null;
+                long latency = 0;
+                try {
+                    try {
+                        written = sink.writeFile(path, content);
+                    } catch (IOException e) {
+                        failure = e;
+                    } catch (RuntimeException e) {
+                        // Otherwise the permit and the pending count would never be given back
+                        failure = new IOException("Writing " + path + " failed", e);
+                    }
+                    latency = System.nanoTime() - start;
+
+                    try {
+                        callback.completed(written, failure);
+                    } catch (IOException e) {
+                        failures.add(e);
+                    } catch (RuntimeException e) {
+                        failures.add(new IOException("Writing " + path + " failed", e));
+                    }
+                } finally {
+                    limit.release(latency, failure != null);
+                    finished();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limit.release(0, true);
+            finished();
+            throw new IOException("Writer is closed; could not write " + path, e);
+        }
+    }
+
+    private synchronized void started() {
+        pending++;
+    }
+
+    private synchronized void finished() {
+        if (--pending == 0) {
+            notifyAll();
+        }
+    }
+
+    private synchronized void awaitPending() throws InterruptedException {
+        while (pending > 0) {
+            wait();
+        }
+    }
+
+    private void writeNow(String path, byte[] content, Callback callback) throws IOException {
+        boolean written;
+        try {
+            written = sink.writeFile(path, content);
+        } catch (IOException e) {
+            callback.completed(false, e);
+            return;
+        }
+        callback.completed(written, null);
+    }
+
+    /**
+     * Waits for every submitted write and rethrows the first failure, with any later
+     * ones attached as suppressed exceptions.
+     */
+    public void awaitCompletion() throws IOException {
+        if (pool != null) {
+            try {
+                awaitPending();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for writes to finish");
+            }
+        }
+
+        IOException first = failures.poll();
+        if (first != null) {
+            for (IOException next; (next = failures.poll()) != null; ) {
+                first.addSuppressed(next);
+            }
+            throw first;
+        }
+    }
+
+    /**
+     * Reports the concurrency the writes settled at and their latency.
+     */
+    public void report(ProgressReporter reporter) {
+        if (pool != null) {
+            reporter.info(pool.limit.describe());
+        }
+    }
+
+    /**
+     * Waits for this writer's writes still in flight, so the sink is never closed
+     * underneath them, and stops the pool if the writer owns it. Failures not collected
+     * by {@link #awaitCompletion()} are dropped.
+     */
+    @Override
+    public void close() {
+        if (pool == null) {
+            return;
+        }
+        try {
+            awaitPending();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsPool) {
+            pool.close();
+        }
+    }
+}
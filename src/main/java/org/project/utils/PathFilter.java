@@ -0,0 +1,226 @@
+package org.project.utils;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Include and exclude globs that select part of a spec's output. Paths are the ones
+ * handed to an {@link OutputSink}: relative to the output root, with '/' as separator.
+ *
+ * <p>A pattern starting with '/' is anchored at the output root; any other pattern may
+ * start at any directory, so "book-service/**" selects that module wherever it is.
+ * "**" matches any number of directories, including none; "*", "?" and "[...]" match
+ * within one name. An entry is selected if it or one of its parents matches an
+ * include, or there are no includes, and neither it nor a parent matches an exclude.
+ * The parents of a selected entry are generated as well.</p>
+ *
+ * <p>Patterns are compiled once, into one matcher per name. Generators walking a tree
+ * ask {@link #select} for each entry on the way down and skip the children of a
+ * directory that cannot hold anything selected.</p>
+ */
+public final class PathFilter {
+    public static final PathFilter ALL = new PathFilter(List.of(), List.of());
+
+    // Stands for "**" among the compiled names
+    private static final Predicate<String> ANY_DEPTH = name -> true;
+
+    /**
+     * What a tree walk does with an entry.
+     */
+    public enum Selection {
+        /**
+         * The entry and everything below it are selected, apart from excludes.
+         */
+        INCLUDED,
+        /**
+         * The entry is not selected, but something below it may be; only a directory is
+         * worth descending into.
+         */
+        PARTIAL,
+        /**
+         * Neither the entry nor anything below it is selected.
+         */
+        EXCLUDED
+    }
+
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+
+    private PathFilter(List<Glob> includes, List<Glob> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a pattern is empty or names a parent directory
+     */
+    public static PathFilter of(Collection<String> includes, Collection<String> excludes) {
+        if (includes.isEmpty() && excludes.isEmpty()) {
+            return ALL;
+        }
+        return new PathFilter(includes.stream().map(Glob::compile).toList(),
+                excludes.stream().map(Glob::compile).toList());
+    }
+
+    public boolean isAll() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * Whether the entry at the path is selected, checking the path's parents as well.
+     */
+    public boolean matches(String path) {
+        if (isAll()) {
+            return true;
+        }
+        String[] names = path.split("/");
+        boolean included = includes.isEmpty();
+        for (int length = 1; length <= names.length; length++) {
+            if (matchesAny(excludes, names, length)) {
+                return false;
+            }
+            included = included || matchesAny(includes, names, length);
+        }
+        return included;
+    }
+
+    /**
+     * Selects an entry during a tree walk, whose parent was selected as given; an entry
+     * below an excluded one is never asked about.
+     */
+    public Selection select(String path, Selection parent) {
+        if (isAll()) {
+            return Selection.INCLUDED;
+        }
+        String[] names = path.split("/");
+        if (matchesAny(excludes, names, names.length)) {
+            return Selection.EXCLUDED;
+        }
+        if (parent == Selection.INCLUDED || includes.isEmpty() || matchesAny(includes, names, names.length)) {
+            return Selection.INCLUDED;
+        }
+        for (Glob include : includes) {
+            if (include.matchesBelow(names)) {
+                return Selection.PARTIAL;
+            }
+        }
+        return Selection.EXCLUDED;
+    }
+
+    private static boolean matchesAny(List<Glob> globs, String[] names, int length) {
+        for (Glob glob : globs) {
+            if (glob.matches(names, length, 0, 0, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "include " + includes + ", exclude " + excludes;
+    }
+
+    /**
+     * A pattern compiled to one matcher per name.
+     */
+    private record Glob(String pattern, List<Predicate<String>> names) {
+
+        static Glob compile(String pattern) {
+            String trimmed = pattern.trim();
+            boolean anchored = trimmed.startsWith("/");
+            while (trimmed.startsWith("/")) {
+                trimmed = trimmed.substring(1);
+            }
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (trimmed.isEmpty()) {
+                throw new IllegalArgumentException("Empty path pattern: \"" + pattern + "\"");
+            }
+
+            List<Predicate<String>> names = new ArrayList<>();
+            if (!anchored) {
+                names.add(ANY_DEPTH);
+            }
+            for (String name : trimmed.split("/+")) {
+                if (name.equals("..")) {
+                    throw new IllegalArgumentException("Path pattern cannot name a parent directory: " + pattern);
+                } else if (name.equals("**")) {
+                    // Consecutive "**" match the same as one
+                    if (names.isEmpty() || names.get(names.size() - 1) != ANY_DEPTH) {
+                        names.add(ANY_DEPTH);
+                    }
+                } else if (name.chars().noneMatch(c -> c == '*' || c == '?' || c == '[')) {
+                    names.add(name::equals);
+                } else {
+                    names.add(Pattern.compile(toRegex(name)).asMatchPredicate());
+                }
+            }
+            return new Glob(pattern, List.copyOf(names));
+        }
+
+        private static String toRegex(String name) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                int close = c == '[' ? name.indexOf(']', i + 2) : -1;
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else if (close > 0) {
+                    String set = name.substring(i + 1, close);
+                    regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+                    i = close;
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+
+        /**
+         * Whether the pattern could match a path that continues below the given one.
+         */
+        boolean matchesBelow(String[] path) {
+            return matches(path, path.length, 0, 0, true);
+        }
+
+        /**
+         * Matches the first {@code length} names of the path from name {@code at} on
+         * against the pattern from matcher {@code from} on. With {@code below}, a path
+         * that ends while the pattern goes on counts as a match.
+         */
+        boolean matches(String[] path, int length, int at, int from, boolean below) {
+            for (; from < names.size(); from++, at++) {
+                Predicate<String> name = names.get(from);
+                if (name == ANY_DEPTH) {
+                    if (below) {
+                        // Takes the rest of the path, and the pattern goes on below it
+                        return true;
+                    }
+                    for (int rest = at; rest <= length; rest++) {
+                        if (matches(path, length, rest, from + 1, false)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                if (at == length) {
+                    return below;
+                }
+                if (!name.test(path[at])) {
+                    return false;
+                }
+            }
+            return at == length && !below;
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.project.utils;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Console reporting for generation runs. Lines are handed to a background thread
+ * that prints them in batches, so generation never waits on console I/O unless the
+ * bounded queue is full.
+ *
+ * <ul>
+ *   <li>{@link Level#QUIET} prints nothing but warnings.</li>
+ *   <li>{@link Level#SUMMARY} prints summaries and a rate-limited progress line with
+ *       the items per second since the previous one.</li>
+ *   <li>{@link Level#VERBOSE} additionally prints one line per item.</li>
+ * </ul>
+ *
+ * Reporting methods are thread-safe.
+ */
+public class ProgressReporter implements AutoCloseable {
+    private static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final String END_OF_OUTPUT = new String("<end>");
+
+    public enum Level {
+        QUIET, SUMMARY, VERBOSE
+    }
+
+    private final Level level;
+    private final PrintStream out;
+    private final long intervalNanos;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong nextProgressNanos;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread printer;
+    private long lastProgressItems;
+    private long lastProgressNanos = startNanos;
+    private volatile boolean closed;
+
+    public ProgressReporter(Level level) {
+        this(level, System.out, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public ProgressReporter(Level level, PrintStream out, long intervalMillis) {
+        this.level = level;
+        this.out = out;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.nextProgressNanos = new AtomicLong(startNanos + intervalNanos);
+
+        if (level == Level.QUIET) {
+            printer = null;
+        } else {
+            printer = new Thread(this::printLines, "progress-reporter");
+            printer.setDaemon(true);
+            printer.start();
+        }
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public boolean isVerbose() {
+        return level == Level.VERBOSE;
+    }
+
+    /**
+     * Counts a processed item and prints its message at verbose level.
+     */
+    public void item(String message) {
+        if (level == Level.VERBOSE) {
+            enqueue(message);
+        }
+        item();
+    }
+
+    /**
+     * Counts a processed item without a message.
+     */
+    public void item() {
+        long count = items.incrementAndGet();
+        if (level == Level.QUIET) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (count == 1) {
+            // Rates are measured from the first item, not from setup such as parsing
+            startProgress(now);
+            return;
+        }
+        long due = nextProgressNanos.get();
+        if (now >= due && nextProgressNanos.compareAndSet(due, now + intervalNanos)) {
+            reportProgress(count, now);
+        }
+    }
+
+    private synchronized void startProgress(long now) {
+        lastProgressNanos = now;
+        nextProgressNanos.set(now + intervalNanos);
+    }
+
+    private synchronized void reportProgress(long count, long now) {
+        double seconds = (now - lastProgressNanos) / 1e9;
+        long rate = seconds > 0 ? Math.round((count - lastProgressItems) / seconds) : 0;
+        lastProgressItems = count;
+        lastProgressNanos = now;
+        enqueue(String.format("Progress: %,d items (%,d items/s)", count, rate));
+    }
+
+    /**
+     * Prints a message at summary and verbose level.
+     */
+    public void info(String message) {
+        if (level != Level.QUIET) {
+            enqueue(message);
+        }
+    }
+
+    /**
+     * Prints a warning to standard error at every level, without delay.
+     */
+    public void warn(String message) {
+        System.err.println(message);
+    }
+
+    public long getItemCount() {
+        return items.get();
+    }
+
+    /**
+     * Prints the item count, elapsed time and overall rate.
+     */
+    public void summary() {
+        long count = items.get();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        info(String.format("Processed %,d items in %.2f s (%,d items/s)", count, seconds,
+                seconds > 0 ? Math.round(count / seconds) : 0));
+    }
+
+    private void enqueue(String line) {
+        // Once closed nothing takes lines off a full queue any more; print them directly
+        try {
+            while (!closed) {
+                if (queue.offer(line, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed && queue.remove(line)) {
+                        // Queued after close() took the rest of the lines
+                        break;
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        printNow(List.of(line));
+    }
+
+    private void printNow(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append(System.lineSeparator());
+        }
+        out.print(text);
+        out.flush();
+    }
+
+    private void printLines() {
+        List<String> batch = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                boolean end = false;
+                for (String line : batch) {
+                    if (line == END_OF_OUTPUT) {
+                        // Lines queued while closing are printed all the same
+                        end = true;
+                        continue;
+                    }
+                    text.append(line).append(System.lineSeparator());
+                }
+                out.print(text);
+                out.flush();
+                text.setLength(0);
+                batch.clear();
+
+                if (end) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints every queued line and stops the background printer. Lines reported after
+     * closing are printed right away, from the reporting thread.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed || printer == null) {
+            closed = true;
+            return;
+        }
+        try {
+            // The printer is still running, so this only waits for room
+            queue.put(END_OF_OUTPUT);
+            printer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+
+        // Queued after the printer took its last batch
+        List<String> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            printNow(rest);
+        }
+    }
+}
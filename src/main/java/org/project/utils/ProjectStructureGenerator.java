@@ -1,60 +1,181 @@
 package org.project.utils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.*;
 
 public class ProjectStructureGenerator {
     private static final String PROJECT_NAME = "book-microservices";
     private static final Pattern FILE_HEADER_PATTERN = Pattern.compile("####\\s+(.+)");
+    // Written by createAdditionalFiles, whose content replaces a spec section's for the same path
+    private static final Set<String> ADDITIONAL_FILES = Set.of(PROJECT_NAME + ".iml",
+            "book-service/book-service.iml", "book-frontend/book-frontend.iml", ".idea/workspace.xml", "README.md",
+            "docker-compose.yml", "docker-compose.dev.yml", "nginx.conf");
     private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```(\\w+)?\\s*\\n([\\s\\S]*?)```");
 
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("Usage: java ProjectStructureGenerator <markdown-file-path> [output-directory]");
+        GenerationOptions options;
+        try {
+            options = GenerationOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            options = null;
+        }
+
+        if (options == null || options.getArguments().isEmpty()) {
+            System.out.println("Usage: java ProjectStructureGenerator [options] <markdown-file-path> [output-directory|archive.zip|archive.tar[.gz]|repository.git]");
             System.out.println("Example: java ProjectStructureGenerator paste.txt ./output");
+            System.out.println("Example: java ProjectStructureGenerator paste.txt ./output.tar.gz");
+            System.out.print(GenerationOptions.usage());
             return;
         }
 
-        String markdownFile = args[0];
-        String outputDir = args.length > 1 ? args[1] : "./";
+        String markdownFile = options.getArguments().get(0);
+        String outputDir = options.getArguments().size() > 1 ? options.getArguments().get(1) : "./";
 
         try {
             ProjectStructureGenerator generator = new ProjectStructureGenerator();
-            generator.generateProject(markdownFile, outputDir);
-            System.out.println("✅ Project structure generated successfully!");
-            System.out.println("📁 Location: " + Paths.get(outputDir, PROJECT_NAME).toAbsolutePath());
-            System.out.println("\n🚀 Next steps:");
-            System.out.println("1. Open IntelliJ IDEA");
-            System.out.println("2. File -> Open -> Select the '" + PROJECT_NAME + "' folder");
-            System.out.println("3. Wait for Maven to import dependencies");
-            System.out.println("4. Run the 'All Services' configuration to start both backend and frontend");
+            generator.generateProject(markdownFile, outputDir, options);
+            if (options.getReportLevel() != ProgressReporter.Level.QUIET) {
+                System.out.println("✅ Project structure generated successfully!");
+                Path location = OutputSink.isArchive(outputDir) || OutputSink.isGitRepository(outputDir) ?
+                        Paths.get(outputDir) : Paths.get(outputDir, PROJECT_NAME);
+                System.out.println("📁 Location: " + location.toAbsolutePath());
+                System.out.println("\n🚀 Next steps:");
+                System.out.println("1. Open IntelliJ IDEA");
+                System.out.println("2. File -> Open -> Select the '" + PROJECT_NAME + "' folder");
+                System.out.println("3. Wait for Maven to import dependencies");
+                System.out.println("4. Run the 'All Services' configuration to start both backend and frontend");
+            }
+            if (options.isWatch()) {
+                PathFilter filter = options.getPathFilter();
+                SpecWatcher.watch(markdownFile, outputDir, true, options, (spec, writer, reporter) ->
+                        generator.generateProject(spec, writer, reporter, null, filter));
+            }
         } catch (Exception e) {
             System.err.println("❌ Error: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Generates the project below the output directory, or streams it into a
+     * .zip/.tar/.tar.gz archive when the output target names one.
+     */
     public void generateProject(String markdownFile, String outputDir) throws IOException {
+        generateProject(markdownFile, outputDir, new GenerationOptions());
+    }
+
+    public void generateProject(String markdownFile, String outputDir, GenerationOptions options) throws IOException {
         String content = Files.readString(Paths.get(markdownFile));
-        Path projectRoot = Paths.get(outputDir, PROJECT_NAME);
+
+        try (OutputSink sink = OutputSink.open(outputDir, true, options)) {
+            generate(content, sink, options);
+        }
+    }
+
+    /**
+     * Generates the project below a directory on any {@link FileSystem}, for example
+     * one created with {@link MemoryFileSystemProvider#newFileSystem()}.
+     */
+    public void generateProject(Path markdownFile, Path outputDir) throws IOException {
+        generateProject(markdownFile, outputDir, new GenerationOptions());
+    }
+
+    public void generateProject(Path markdownFile, Path outputDir, GenerationOptions options) throws IOException {
+        String content = Files.readString(markdownFile);
+
+        try (OutputSink sink = OutputSink.open(outputDir, true, options)) {
+            generate(content, sink, options);
+        }
+    }
+
+    private void generate(String content, OutputSink sink, GenerationOptions options) throws IOException {
+        JavaCompileCheck.SourceCapture sources = options.isVerifyJava() ? new JavaCompileCheck.SourceCapture(sink) : null;
+        try (ProgressReporter reporter = new ProgressReporter(options.getReportLevel());
+             ParallelWriter writer = new ParallelWriter(sources != null ? sources : sink, options)) {
+            generateProject(content, writer, reporter, options.getPipeline(), options.getPathFilter());
+            sink.commit();
+            sink.report(reporter);
+            if (sources != null) {
+                JavaCompileCheck.verify(sources, options, reporter);
+            }
+        }
+    }
+
+    public void generateProject(String content, OutputSink sink) throws IOException {
+        try (ProgressReporter reporter = new ProgressReporter(ProgressReporter.Level.VERBOSE)) {
+            generateProject(content, sink, reporter);
+        }
+    }
+
+    public void generateProject(String content, OutputSink sink, ProgressReporter reporter) throws IOException {
+        try (ParallelWriter writer = new ParallelWriter(sink, new GenerationOptions())) {
+            generateProject(content, writer, reporter);
+        }
+    }
+
+    /**
+     * Generates the project through a writer, which may share its pool with writers for
+     * other runs. Every write has finished when this returns; committing the sink is
+     * left to the caller.
+     */
+    public void generateProject(String content, ParallelWriter writer, ProgressReporter reporter) throws IOException {
+        generateProject(content, writer, reporter, null);
+    }
+
+    /**
+     * @param pipeline how to run parsing, rendering and writing of the spec's files as a
+     *                 {@link GenerationPipeline}, or null to parse them all first and then
+     *                 write them from the calling thread
+     */
+    public void generateProject(String content, ParallelWriter writer, ProgressReporter reporter,
+                                GenerationPipeline.Settings pipeline) throws IOException {
+        generateProject(content, writer, reporter, pipeline, PathFilter.ALL);
+    }
+
+    /**
+     * @param filter the part of the project to generate, matched against paths below the
+     *               output root; the content of sections it excludes is not extracted
+     */
+    public void generateProject(String content, ParallelWriter writer, ProgressReporter reporter,
+                                GenerationPipeline.Settings pipeline, PathFilter filter) throws IOException {
+        OutputSink sink = writer.getSink();
+
+        // Files get the line endings of their code blocks; a spec checked out with CRLF
+        // line endings must not produce different files
+        content = content.replace("\r\n", "\n");
 
         // Create project root directory
-        Files.createDirectories(projectRoot);
-        System.out.println("📁 Created project root: " + projectRoot);
+        sink.createDirectory(PROJECT_NAME);
+        reporter.item("📁 Created project root: " + PROJECT_NAME);
 
         // Create directory structure first
-        createDirectoryStructure(projectRoot);
+        createDirectoryStructure(sink, filter, reporter);
 
         // Parse and create files
-        parseAndCreateFiles(content, projectRoot);
+        if (pipeline == null) {
+            parseAndCreateFiles(content, writer, filter, reporter);
+        } else {
+            GenerationPipeline<Section, SpecFile> stages = new GenerationPipeline<>(sink, pipeline,
+                    new SectionParser(filter), file -> render(file.path(), file.content(), reporter));
+            stages.run(sections(content));
+            stages.report(reporter);
+        }
 
         // Create additional necessary files
-        createAdditionalFiles(projectRoot);
+        createAdditionalFiles(writer, filter, reporter);
+
+        writer.awaitCompletion();
+        writer.report(reporter);
+        reporter.summary();
     }
 
-    private void createDirectoryStructure(Path projectRoot) throws IOException {
+    private void createDirectoryStructure(OutputSink sink, PathFilter filter, ProgressReporter reporter)
+            throws IOException {
         String[] directories = {
                 ".idea",
                 ".idea/runConfigurations",
@@ -78,40 +199,98 @@ public class ProjectStructureGenerator {
         };
 
         for (String dir : directories) {
-            Path dirPath = projectRoot.resolve(dir);
-            Files.createDirectories(dirPath);
-            System.out.println("📂 Created directory: " + dir);
+            if (!filter.matches(resolve(dir))) {
+                continue;
+            }
+            sink.createDirectory(resolve(dir));
+            reporter.item("📂 Created directory: " + dir);
+        }
+    }
+
+    private void parseAndCreateFiles(String content, ParallelWriter writer, PathFilter filter,
+                                     ProgressReporter reporter) throws IOException {
+        // Sorted, so the files are written in the same order on every run and JDK
+        Map<String, String> files = new TreeMap<>();
+
+        for (Section section : sections(content)) {
+            SpecFile file = parseSection(section, filter);
+            if (file != null) {
+                files.put(file.path(), file.content());
+            }
+        }
+
+        // Create files
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            createFile(writer, entry.getKey(), entry.getValue(), reporter);
         }
     }
 
-    private void parseAndCreateFiles(String content, Path projectRoot) throws IOException {
-        Map<String, String> files = new HashMap<>();
+    // A "#### path" section of the spec and its position in it
+    private record Section(int index, String text) {
+    }
 
+    // A file given by a section; a later section for the same path replaces it
+    private record SpecFile(int index, String path, String content) {
+    }
+
+    private static List<Section> sections(String content) {
         // Split content by file headers
         String[] sections = content.split("(?=####\\s+)");
 
-        for (String section : sections) {
-            String[] lines = section.split("\n");
-            if (lines.length == 0) continue;
+        List<Section> result = new ArrayList<>(sections.length);
+        for (int i = 0; i < sections.length; i++) {
+            result.add(new Section(i, sections[i]));
+        }
+        return result;
+    }
 
-            Matcher headerMatcher = FILE_HEADER_PATTERN.matcher(lines[0]);
-            if (!headerMatcher.matches()) continue;
+    // Null for sections without a file, with one the filter does not select, or with one
+    // of the additional files; writing both would race on the writer's workers
+    private static SpecFile parseSection(Section section, PathFilter filter) {
+        String[] lines = section.text().split("\n");
+        if (lines.length == 0) return null;
 
-            String filePath = headerMatcher.group(1).trim();
-            String fileContent = extractCodeContent(section);
+        Matcher headerMatcher = FILE_HEADER_PATTERN.matcher(lines[0]);
+        if (!headerMatcher.matches()) return null;
+
+        String filePath = headerMatcher.group(1).trim();
+        if (ADDITIONAL_FILES.contains(cleanPath(filePath)) || !filter.matches(resolve(cleanPath(filePath)))) {
+            return null;
+        }
+        String fileContent = extractCodeContent(section.text());
 
-            if (!fileContent.isEmpty()) {
-                files.put(filePath, fileContent);
+        return fileContent.isEmpty() ? null : new SpecFile(section.index(), filePath, fileContent);
+    }
+
+    /**
+     * Parses sections on any number of workers and emits the files once all are parsed,
+     * sorted by path like the sequential generator writes them.
+     */
+    private static final class SectionParser implements GenerationPipeline.Parser<Section, SpecFile> {
+        private final Map<String, SpecFile> files = new ConcurrentHashMap<>();
+        private final PathFilter filter;
+
+        SectionParser(PathFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public void parse(Section section, GenerationPipeline.Emitter<SpecFile> out) {
+            SpecFile file = parseSection(section, filter);
+            if (file != null) {
+                files.merge(file.path(), file, (first, second) -> first.index() > second.index() ? first : second);
             }
         }
 
-        // Create files
-        for (Map.Entry<String, String> entry : files.entrySet()) {
-            createFile(projectRoot, entry.getKey(), entry.getValue());
+        @Override
+        public void finish(GenerationPipeline.Emitter<SpecFile> out) throws IOException {
+            for (SpecFile file : new TreeMap<>(files).values()) {
+                out.emit(file);
+            }
         }
     }
 
-    private String extractCodeContent(String section) {
+    private static String extractCodeContent(String section) {
         Matcher codeMatcher = CODE_BLOCK_PATTERN.matcher(section);
         if (codeMatcher.find()) {
             return codeMatcher.group(2).trim();
@@ -119,40 +298,64 @@ public class ProjectStructureGenerator {
         return "";
     }
 
-    private void createFile(Path projectRoot, String filePath, String content) throws IOException {
-        // Clean up file path
-        filePath = filePath.replace("(Root)", "").trim();
+    private void createFile(ParallelWriter writer, String filePath, String content, ProgressReporter reporter)
+            throws IOException {
+        GenerationPipeline.Output output = render(filePath, content, reporter);
+        writer.write(output.path(), output.content(), output.callback());
+    }
+
+    private static GenerationPipeline.Output render(String filePath, String content, ProgressReporter reporter) {
+        String cleanPath = cleanPath(filePath);
+
+        // Write file content; the sink creates missing parent directories. The write may
+        // finish on another thread, which then reports it
+        return new GenerationPipeline.Output(resolve(cleanPath), content.getBytes(StandardCharsets.UTF_8),
+                (written, failure) -> {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    reporter.item("📄 Created file: " + cleanPath);
+                });
+    }
 
-        Path fullPath = projectRoot.resolve(filePath);
+    // Section headers may mark files in the project root with "(Root)"
+    private static String cleanPath(String filePath) {
+        return filePath.replace("(Root)", "").trim();
+    }
 
-        // Ensure parent directories exist
-        Files.createDirectories(fullPath.getParent());
+    private static void writeString(ParallelWriter writer, PathFilter filter, String filePath, String content)
+            throws IOException {
+        if (filter.matches(resolve(filePath))) {
+            writer.write(resolve(filePath), content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
 
-        // Write file content
-        Files.writeString(fullPath, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        System.out.println("📄 Created file: " + filePath);
+    // Entries are written below the project root folder of the output target
+    private static String resolve(String filePath) {
+        return PROJECT_NAME + "/" + filePath;
     }
 
-    private void createAdditionalFiles(Path projectRoot) throws IOException {
+    private void createAdditionalFiles(ParallelWriter writer, PathFilter filter, ProgressReporter reporter)
+            throws IOException {
         // Create .iml files for IntelliJ modules
-        createImlFiles(projectRoot);
+        createImlFiles(writer, filter);
 
         // Create workspace.xml
-        createWorkspaceXml(projectRoot);
+        createWorkspaceXml(writer, filter);
 
         // Create README.md
-        createReadme(projectRoot);
+        createReadme(writer, filter);
 
         // Create docker-compose files
-        createDockerComposeFiles(projectRoot);
+        createDockerComposeFiles(writer, filter);
 
         // Create nginx.conf
-        createNginxConf(projectRoot);
+        createNginxConf(writer, filter);
 
-        System.out.println("📝 Created additional configuration files");
+        reporter.info("📝 Created additional configuration files");
     }
 
-    private void createImlFiles(Path projectRoot) throws IOException {
+    private void createImlFiles(ParallelWriter writer, PathFilter filter) throws IOException {
         // Root .iml file
         String rootIml = """
             <?xml version="1.0" encoding="UTF-8"?>
@@ -167,7 +370,7 @@ public class ProjectStructureGenerator {
               </component>
             </module>
             """;
-        Files.writeString(projectRoot.resolve(PROJECT_NAME + ".iml"), rootIml);
+        writeString(writer, filter, PROJECT_NAME + ".iml", rootIml);
 
         // book-service .iml file
         String bookServiceIml = """
@@ -187,7 +390,7 @@ public class ProjectStructureGenerator {
               </component>
             </module>
             """;
-        Files.writeString(projectRoot.resolve("book-service/book-service.iml"), bookServiceIml);
+        writeString(writer, filter, "book-service/book-service.iml", bookServiceIml);
 
         // book-frontend .iml file
         String bookFrontendIml = """
@@ -203,10 +406,10 @@ public class ProjectStructureGenerator {
               </component>
             </module>
             """;
-        Files.writeString(projectRoot.resolve("book-frontend/book-frontend.iml"), bookFrontendIml);
+        writeString(writer, filter, "book-frontend/book-frontend.iml", bookFrontendIml);
     }
 
-    private void createWorkspaceXml(Path projectRoot) throws IOException {
+    private void createWorkspaceXml(ParallelWriter writer, PathFilter filter) throws IOException {
         String workspaceXml = """
             <?xml version="1.0" encoding="UTF-8"?>
             <project version="4">
@@ -229,10 +432,10 @@ public class ProjectStructureGenerator {
               </component>
             </project>
             """;
-        Files.writeString(projectRoot.resolve(".idea/workspace.xml"), workspaceXml);
+        writeString(writer, filter, ".idea/workspace.xml", workspaceXml);
     }
 
-    private void createReadme(Path projectRoot) throws IOException {
+    private void createReadme(ParallelWriter writer, PathFilter filter) throws IOException {
         String readme = """
             # Book Microservices Project
             
@@ -296,10 +499,10 @@ public class ProjectStructureGenerator {
             
             Generated by ProjectStructureGenerator
             """;
-        Files.writeString(projectRoot.resolve("README.md"), readme);
+        writeString(writer, filter, "README.md", readme);
     }
 
-    private void createDockerComposeFiles(Path projectRoot) throws IOException {
+    private void createDockerComposeFiles(ParallelWriter writer, PathFilter filter) throws IOException {
         String dockerCompose = """
             version: '3.8'
             services:
@@ -337,7 +540,7 @@ public class ProjectStructureGenerator {
               book-network:
                 driver: bridge
             """;
-        Files.writeString(projectRoot.resolve("docker-compose.yml"), dockerCompose);
+        writeString(writer, filter, "docker-compose.yml", dockerCompose);
 
         String dockerComposeDev = """
             version: '3.8'
@@ -370,27 +573,27 @@ public class ProjectStructureGenerator {
               book-network:
                 driver: bridge
             """;
-        Files.writeString(projectRoot.resolve("docker-compose.dev.yml"), dockerComposeDev);
+        writeString(writer, filter, "docker-compose.dev.yml", dockerComposeDev);
     }
 
-    private void createNginxConf(Path projectRoot) throws IOException {
+    private void createNginxConf(ParallelWriter writer, PathFilter filter) throws IOException {
         String nginxConf = """
             events {
                 worker_connections 1024;
             }
-            
+
             http {
                 upstream backend {
                     server book-service:8080;
                 }
-                
+
                 upstream frontend {
                     server book-frontend:3000;
                 }
-                
+
                 server {
                     listen 80;
-                    
+
                     location /api/ {
                         proxy_pass http://backend;
                         proxy_set_header Host $host;
@@ -398,7 +601,7 @@ public class ProjectStructureGenerator {
                         proxy_set_header X-Forwarded-For $proxy_add_x_forwarded_for;
                         proxy_set_header X-Forwarded-Proto $scheme;
                     }
-                    
+
                     location / {
                         proxy_pass http://frontend;
                         proxy_set_header Host $host;
@@ -409,6 +612,6 @@ public class ProjectStructureGenerator {
                 }
             }
             """;
-        Files.writeString(projectRoot.resolve("nginx.conf"), nginxConf);
+        writeString(writer, filter, "nginx.conf", nginxConf);
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * Decorates a sink to publish a {@link GenerationEvent} for every entry as it is
+ * created, written, kept or fails, so a subscriber can stream progress or index files
+ * while they are produced instead of walking the output once generation is done.
+ *
+ * <p>Events are delivered by a {@link SubmissionPublisher}: every subscriber receives
+ * them on the publisher's executor, in the order they were published, as fast as it
+ * requests them. When a subscriber's buffer is full, the write that publishes the next
+ * event waits until it requests more, so generation never runs further ahead of the
+ * slowest subscriber than its buffer. Subscribers complete once the sink is committed
+ * and receive the failure when committing fails or the sink is closed without a commit.</p>
+ *
+ * <p>Only the entries the generator asks for are published; parent directories that a
+ * sink creates on its own before writing a file are not.</p>
+ *
+ * <pre>
+ * try (PublishingSink sink = new PublishingSink(OutputSink.open(target, false, options))) {
+ *     sink.subscribe(indexer);
+ *     GenericProjectStructureGenerator.generateProjectStructure(lines, sink, reporter);
+ *     sink.commit();
+ * }
+ * </pre>
+ */
+public class PublishingSink implements OutputSink, Flow.Publisher<GenerationEvent> {
+    private final OutputSink sink;
+    private final SubmissionPublisher<GenerationEvent> publisher;
+    private volatile boolean committed;
+
+    /**
+     * Publishes on the common pool with a buffer of {@link Flow#defaultBufferSize()}
+     * events per subscriber.
+     */
+    public PublishingSink(OutputSink sink) {
+        this(sink, new SubmissionPublisher<>());
+    }
+
+    public PublishingSink(OutputSink sink, Executor executor, int bufferSize) {
+        this(sink, new SubmissionPublisher<>(executor, bufferSize));
+    }
+
+    private PublishingSink(OutputSink sink, SubmissionPublisher<GenerationEvent> publisher) {
+        this.sink = sink;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Subscribes to the events published from now on; subscribe before generating to
+     * see every entry.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super GenerationEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return sink.supportsConcurrentWrites();
+    }
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        boolean created;
+        try {
+            created = sink.createDirectory(path);
+        } catch (IOException | RuntimeException e) {
+            publisher.submit(GenerationEvent.failed(path, true, 0, asIOException(e)));
+            throw e;
+        }
+        publisher.submit(created ? GenerationEvent.directoryCreated(path) : GenerationEvent.skipped(path, true, 0));
+        return created;
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        boolean written;
+        try {
+            written = sink.writeFile(path, content);
+        } catch (IOException | RuntimeException e) {
+            publisher.submit(GenerationEvent.failed(path, false, content.length, asIOException(e)));
+            throw e;
+        }
+        publisher.submit(written ? GenerationEvent.fileWritten(path, content.length) :
+                GenerationEvent.skipped(path, false, content.length));
+        return written;
+    }
+
+    // A sink may also fail unchecked, e.g. on a path its file system rejects; subscribers
+    // must see that entry fail as well
+    private static IOException asIOException(Exception failure) {
+        return failure instanceof IOException io ? io : new IOException(failure);
+    }
+
+    /**
+     * Commits the decorated sink and completes the subscribers, or hands them the
+     * failure if the commit fails.
+     */
+    @Override
+    public void commit() throws IOException {
+        try {
+            sink.commit();
+        } catch (IOException | RuntimeException e) {
+            publisher.closeExceptionally(e);
+            throw e;
+        }
+        committed = true;
+        publisher.close();
+    }
+
+    @Override
+    public void report(ProgressReporter reporter) {
+        sink.report(reporter);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            publisher.closeExceptionally(new IOException("Generation ended without committing its output"));
+        }
+        sink.close();
+    }
+}
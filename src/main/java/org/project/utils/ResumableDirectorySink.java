@@ -0,0 +1,110 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directory sink that keeps a {@link GenerationJournal} of completed operations, so a
+ * run that is killed can be restarted with the same spec and output and skip whatever
+ * the journal records as done. Skipped entries cost a checksum of the rendered content
+ * and a map lookup; nothing on disk is touched for them.
+ *
+ * <p>Files the journal does not know about follow the sink's overwrite setting, with
+ * one exception: an existing file last modified after the interrupted run started was
+ * most likely cut short by it and is written again. The journal is removed once a run
+ * completes without failures.</p>
+ */
+public class ResumableDirectorySink extends DirectorySink {
+    private final GenerationJournal journal;
+    private final AtomicInteger skipped = new AtomicInteger();
+    private volatile boolean failed;
+
+    public ResumableDirectorySink(Path root, boolean overwrite) throws IOException {
+        this(root, overwrite, Durability.NONE);
+    }
+
+    public ResumableDirectorySink(Path root, boolean overwrite, Durability durability) throws IOException {
+        super(root, overwrite, durability);
+        this.journal = GenerationJournal.open(root);
+    }
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        if (journal.isDirectoryDone(path)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        try {
+            boolean created = super.createDirectory(path);
+            journal.directoryCreated(path);
+            return created;
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        if (path.equals(GenerationJournal.FILE_NAME)) {
+            return false;
+        }
+
+        long checksum = GenerationJournal.checksum(content);
+        if (journal.isDone(path, content.length, checksum)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+
+        try {
+            Path file = resolve(path);
+            createParentDirectories(file);
+            boolean written = write(file, content, isOverwrite());
+            if (!written && journal.isFromInterruptedRun(path, file)) {
+                written = write(file, content, true);
+            }
+            if (written) {
+                journal.fileWritten(path, content.length, checksum);
+            } else {
+                journal.fileKept(path);
+            }
+            return written;
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void commit() throws IOException {
+        super.commit();
+        if (failed) {
+            // Keep the journal so the next run only retries what is missing
+            journal.close();
+        } else {
+            journal.complete();
+            // Removing the journal changed the root once more
+            directoryChanged(getRoot());
+            super.commit();
+        }
+    }
+
+    @Override
+    public void report(ProgressReporter reporter) {
+        super.report(reporter);
+        if (journal.isResumed()) {
+            reporter.info(String.format("Resumed from journal: %,d entries already done, last %,d verified, %,d written again",
+                    skipped.get(), journal.getVerifiedCount(), journal.getFailedCount()));
+        }
+    }
+
+    public int getSkippedCount() {
+        return skipped.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+}
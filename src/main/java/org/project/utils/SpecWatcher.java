@@ -0,0 +1,259 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an output directory in sync with a markdown spec while it is being edited.
+ * The spec's directory is registered with a {@link WatchService}; a burst of events
+ * for the spec is debounced into one update once it has been quiet for
+ * {@value #DEBOUNCE_MILLIS} ms.
+ *
+ * <p>An update renders the spec into a {@link CapturingSink} and compares it with the
+ * previous render. Only the differences touch the disk: new entries are created,
+ * changed files rewritten, and files and empty directories that left the spec are
+ * deleted. A file is only rewritten or deleted while it still has the content of the
+ * previous render, so local edits to generated files are never lost.</p>
+ */
+public class SpecWatcher {
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    /**
+     * Renders a spec through a writer, e.g. with one of the generators.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        void render(String spec, ParallelWriter writer, ProgressReporter reporter) throws IOException;
+    }
+
+    public record Changes(int added, int changed, int removed, int kept) {
+        public boolean isEmpty() {
+            return added + changed + removed + kept == 0;
+        }
+    }
+
+    private final Path specFile;
+    private final DirectorySink target;
+    private final boolean overwrite;
+    private final Renderer renderer;
+    private final ProgressReporter reporter;
+    private CapturingSink previous;
+
+    /**
+     * @param overwrite how files that exist but were not generated by a previous render
+     *                  are treated, as for {@link DirectorySink}
+     */
+    public SpecWatcher(Path specFile, Path outputDirectory, boolean overwrite, Renderer renderer,
+                       ProgressReporter reporter) throws IOException {
+        this(specFile, outputDirectory, overwrite, new GenerationOptions(), renderer, reporter);
+    }
+
+    /**
+     * @param options how the output directory is written: durability, hard links, fixed
+     *                time and the listing cache, as for the first generation
+     */
+    public SpecWatcher(Path specFile, Path outputDirectory, boolean overwrite, GenerationOptions options,
+                       Renderer renderer, ProgressReporter reporter) throws IOException {
+        this.specFile = specFile.toAbsolutePath();
+        this.target = OutputSink.open(outputDirectory, overwrite, options);
+        this.overwrite = overwrite;
+        this.renderer = renderer;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Watches a spec given on the command line, after it has been generated once, and
+     * reports at the level of the options. Returns only when interrupted.
+     *
+     * @throws IllegalArgumentException if the output target is an archive or a git repository
+     */
+    public static void watch(String specFile, String outputDirectory, boolean overwrite, GenerationOptions options,
+                             Renderer renderer) throws IOException {
+        if (OutputSink.isArchive(outputDirectory) || OutputSink.isGitRepository(outputDirectory)) {
+            throw new IllegalArgumentException("--watch needs an output directory, not an archive or repository");
+        }
+
+        ProgressReporter reporter = new ProgressReporter(options.getReportLevel());
+        try {
+            new SpecWatcher(Paths.get(specFile), Paths.get(outputDirectory), overwrite, options, renderer, reporter)
+                    .watch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reporter.close();
+        }
+    }
+
+    /**
+     * Watches the spec until the thread is interrupted. The output directory is
+     * expected to hold the result of generating the current spec already.
+     */
+    public void watch() throws IOException, InterruptedException {
+        previous = render(Files.readString(specFile));
+
+        Path directory = specFile.getParent();
+        try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            reporter.info("Watching " + specFile + " for changes (Ctrl+C to stop)");
+
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = drain(key);
+
+                // Debounce: editors often save in several steps
+                while ((key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key);
+                }
+
+                if (changed) {
+                    updateFromSpec();
+                }
+            }
+        }
+    }
+
+    // Whether any of the key's events concern the spec file; the key is reset either way
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW ||
+                    specFile.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void updateFromSpec() {
+        long start = System.nanoTime();
+        try {
+            Changes changes = update(Files.readString(specFile));
+            if (!changes.isEmpty()) {
+                reporter.info(String.format("Updated in %.1f ms: %d added, %d changed, %d removed, %d kept",
+                        (System.nanoTime() - start) / 1e6, changes.added(), changes.changed(),
+                        changes.removed(), changes.kept()));
+            }
+        } catch (IOException e) {
+            // The spec may be mid-save or briefly missing; the next event retries
+            reporter.warn("Warning: Could not update from " + specFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Renders the spec and applies the differences to the previous render to the
+     * output directory.
+     */
+    public Changes update(String spec) throws IOException {
+        CapturingSink current = render(spec);
+        if (previous == null) {
+            previous = new CapturingSink(overwrite);
+        }
+
+        int added = 0;
+        int changed = 0;
+        int removed = 0;
+        int kept = 0;
+
+        // The directory may have been edited since the last update; list it afresh
+        target.setListingCache(target.isListingCache());
+
+        for (String directory : current.getDirectories()) {
+            if (!previous.getDirectories().contains(directory) && target.createDirectory(directory)) {
+                entry("Created directory: " + directory);
+                added++;
+            }
+        }
+
+        for (Map.Entry<String, byte[]> file : current.getFiles().entrySet()) {
+            String path = file.getKey();
+            byte[] before = previous.getFiles().get(path);
+            if (before == null) {
+                if (target.writeFile(path, file.getValue())) {
+                    entry("Created file: " + path);
+                    added++;
+                } else {
+                    kept++;
+                }
+            } else if (!Arrays.equals(before, file.getValue())) {
+                if (hasContent(path, before)) {
+                    // Through the sink, which never writes through a shared hard link
+                    target.write(target.resolve(path), file.getValue(), true);
+                    entry("Updated file: " + path);
+                    changed++;
+                } else if (!Files.exists(target.resolve(path)) && target.writeFile(path, file.getValue())) {
+                    // Deleted locally; there is no local content to keep
+                    entry("Recreated file: " + path);
+                    changed++;
+                } else {
+                    reporter.warn("Warning: Kept locally modified file " + path);
+                    kept++;
+                }
+            }
+        }
+
+        for (Map.Entry<String, byte[]> file : previous.getFiles().entrySet()) {
+            String path = file.getKey();
+            if (!current.getFiles().containsKey(path)) {
+                if (hasContent(path, file.getValue())) {
+                    Files.delete(target.resolve(path));
+                    target.directoryChanged(target.resolve(path).getParent());
+                    entry("Deleted file: " + path);
+                    removed++;
+                } else if (Files.exists(target.resolve(path))) {
+                    reporter.warn("Warning: Kept locally modified file " + path);
+                    kept++;
+                }
+            }
+        }
+
+        // Children before parents, and only directories that ended up empty
+        List<String> directories = new ArrayList<>(previous.getDirectories());
+        Collections.reverse(directories);
+        for (String directory : directories) {
+            if (!current.getDirectories().contains(directory)) {
+                try {
+                    if (Files.deleteIfExists(target.resolve(directory))) {
+                        target.directoryChanged(target.resolve(directory).getParent());
+                        entry("Deleted directory: " + directory);
+                        removed++;
+                    }
+                } catch (DirectoryNotEmptyException e) {
+                    // Holds files that are not ours
+                }
+            }
+        }
+
+        // Syncs and retimes what changed, as the first generation's commit did
+        target.commit();
+        previous = current;
+        return new Changes(added, changed, removed, kept);
+    }
+
+    // Per-entry lines at verbose level; counted updates would only add progress noise here
+    private void entry(String message) {
+        if (reporter.isVerbose()) {
+            reporter.info(message);
+        }
+    }
+
+    private CapturingSink render(String spec) throws IOException {
+        CapturingSink sink = new CapturingSink(overwrite);
+        try (ProgressReporter quiet = new ProgressReporter(ProgressReporter.Level.QUIET);
+             ParallelWriter writer = new ParallelWriter(sink, new GenerationOptions())) {
+            renderer.render(spec, writer, quiet);
+        }
+        return sink;
+    }
+
+    private boolean hasContent(String path, byte[] expected) throws IOException {
+        Path file = target.resolve(path);
+        try {
+            return Files.size(file) == expected.length && Arrays.equals(Files.readAllBytes(file), expected);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Directory sink that builds the output in a hidden staging directory and publishes it
+ * with atomic renames on {@link #commit()}. If the sink is closed without a commit, or
+ * any write failed, the staging directory is deleted in parallel and the target is left
+ * untouched. What is published depends on the {@link Scope}:
+ *
+ * <ul>
+ *   <li>{@link Scope#DIRECTORY}: the target is the project itself. It is staged in a
+ *       hidden sibling and swapped in with one rename, so readers see either the old
+ *       tree or the complete new one. The current directory, or one containing it,
+ *       cannot be swapped and is rejected.</li>
+ *   <li>{@link Scope#ENTRIES}: the target holds the project folder next to other
+ *       entries. It is staged in a hidden directory inside the target, and each
+ *       top-level entry it produced is renamed into place. Everything else in the
+ *       target, and the target itself, is left alone, so the target may be the current
+ *       directory or hold other projects. A single project folder is published at once;
+ *       several top-level entries are published one after the other.</li>
+ * </ul>
+ *
+ * <p>Whatever is replaced is renamed aside just before the staged tree is renamed into
+ * place and deleted afterwards. If publishing fails, the entries already published are
+ * moved back to the staging directory and the previous ones restored.</p>
+ */
+public class StagedDirectorySink extends DirectorySink {
+
+    /**
+     * What the output directory holds, and so what is published.
+     */
+    public enum Scope {
+        /**
+         * The project itself, published by swapping the whole directory.
+         */
+        DIRECTORY,
+        /**
+         * The project folder among other entries, published entry by entry.
+         */
+        ENTRIES
+    }
+
+    private final Path target;
+    private final Scope scope;
+    private volatile boolean failed;
+    private boolean committed;
+
+    public StagedDirectorySink(Path target, boolean overwrite) throws IOException {
+        this(target, overwrite, Durability.NONE, Scope.ENTRIES);
+    }
+
+    public StagedDirectorySink(Path target, boolean overwrite, Durability durability, Scope scope)
+            throws IOException {
+        super(createStagingDirectory(target, scope), overwrite, durability);
+        this.target = target.toAbsolutePath().normalize();
+        this.scope = scope;
+    }
+
+    private static Path createStagingDirectory(Path target, Scope scope) throws IOException {
+        Path absolute = target.toAbsolutePath().normalize();
+        Path parent;
+        String prefix;
+        if (scope == Scope.DIRECTORY) {
+            Path cwd = absolute.getFileSystem() == FileSystems.getDefault() ?
+                    Paths.get("").toAbsolutePath() : null;
+            if (absolute.getParent() == null || cwd != null && cwd.startsWith(absolute)) {
+                throw new IOException("Cannot publish " + target + " atomically: it is the current directory, " +
+                        "contains it or has no parent to stage next to");
+            }
+            parent = absolute.getParent();
+            prefix = "." + absolute.getFileName() + ".staging-";
+        } else {
+            parent = absolute;
+            prefix = ".staging-";
+        }
+        Files.createDirectories(parent);
+
+        // Created with the default permissions, unlike Files.createTempDirectory, so the
+        // published entries look like ones created directly. Next to or inside the
+        // target, so the renames stay on one file system
+        while (true) {
+            Path staging = parent.resolve(prefix + Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1));
+            try {
+                return Files.createDirectory(staging);
+            } catch (FileAlreadyExistsException e) {
+                // Name collision with a concurrent run; pick another name
+            }
+        }
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        try {
+            return super.createDirectory(path);
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        try {
+            return super.writeFile(path, content);
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void commit() throws IOException {
+        if (failed) {
+            throw new IOException("Some entries could not be written; " + target + " was not published");
+        }
+        // The staged tree is durable before it is published
+        super.commit();
+
+        Path staging = getRoot();
+        Path previous = staging.resolveSibling(staging.getFileName() + ".old");
+        if (scope == Scope.DIRECTORY) {
+            publishDirectory(staging, previous);
+        } else {
+            publishEntries(staging, previous);
+        }
+        committed = true;
+        ParallelDelete.deleteTrees(List.of(previous, staging));
+
+        // And so are the renames that published them
+        directoryChanged(staging.getParent());
+        super.commit();
+    }
+
+    private void publishDirectory(Path staging, Path previous) throws IOException {
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+        Files.move(target, previous, StandardCopyOption.ATOMIC_MOVE);
+        try {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            restore(previous, target, e);
+            throw e;
+        }
+    }
+
+    private void publishEntries(Path staging, Path previous) throws IOException {
+        List<Path> entries;
+        try (Stream<Path> stream = Files.list(staging)) {
+            entries = stream.toList();
+        }
+        List<String> published = new ArrayList<>();
+        try {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                Path destination = target.resolve(name);
+                if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!Files.exists(previous, LinkOption.NOFOLLOW_LINKS)) {
+                        Files.createDirectory(previous);
+                    }
+                    Files.move(destination, previous.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.move(entry, destination, StandardCopyOption.ATOMIC_MOVE);
+                published.add(name);
+            }
+        } catch (IOException | RuntimeException e) {
+            rollBack(staging, previous, published, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns to the previous output: the published entries go back to the staging
+     * directory, which {@link #close()} deletes, and the ones renamed aside to their
+     * place. Failures are attached to the one that stopped publishing.
+     */
+    private void rollBack(Path staging, Path previous, List<String> published, Exception failure) {
+        for (String name : published.reversed()) {
+            restore(target.resolve(name), staging.resolve(name), failure);
+        }
+        if (!Files.exists(previous, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            try (Stream<Path> stream = Files.list(previous)) {
+                for (Path entry : stream.toList()) {
+                    restore(entry, target.resolve(entry.getFileName().toString()), failure);
+                }
+            }
+            Files.deleteIfExists(previous);
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    // Moves an entry back while rolling back
+    private static void restore(Path from, Path to, Exception failure) {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            ParallelDelete.deleteTree(getRoot());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Training run for the AppCDS archive built by the "cds" Maven profile. It calls the
+ * command line entry points the way pipelines do, on the bundled example specs, so
+ * every class they load on a typical run ends up in the archive:
+ *
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=app.jsa -cp app.jar org.project.utils.StartupTraining
+ * java -XX:SharedArchiveFile=app.jsa -cp app.jar org.project.utils.GenericProjectStructureGenerator spec.md out
+ * </pre>
+ *
+ * Output of the entry points is discarded; everything is generated below a temporary
+ * directory that is deleted afterwards.
+ */
+public class StartupTraining {
+    private static final String[] SPECS = {"/intellij_project_structure.md", "/carparts_project_files.md"};
+
+    public static void main(String[] args) throws IOException {
+        Path work = Files.createTempDirectory("startup-training");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+        try {
+            for (String resource : SPECS) {
+                Path spec = work.resolve(resource.substring(1));
+                try (InputStream in = StartupTraining.class.getResourceAsStream(resource)) {
+                    if (in == null) {
+                        throw new FileNotFoundException("Bundled spec not found: " + resource);
+                    }
+                    Files.copy(in, spec);
+                }
+                train(spec, work.resolve(spec.getFileName() + ".out"));
+            }
+        } finally {
+            System.setOut(out);
+            ParallelDelete.deleteTree(work);
+        }
+        out.println("Startup training completed");
+    }
+
+    private static void train(Path spec, Path output) {
+        String generic = output.resolve("generic").toString();
+        String project = output.resolve("project").toString();
+
+        GenericProjectStructureGenerator.main(new String[]{spec.toString(), generic});
+        GenericProjectStructureGenerator.main(new String[]{"--summary", spec.toString(), generic + ".zip"});
+        ProjectStructureGenerator.main(new String[]{spec.toString(), project});
+        ProjectStructureGenerator.main(new String[]{"--quiet", spec.toString(), project + ".tar.gz"});
+        IntelliJLineCounter.main(new String[]{output.toString()});
+    }
+}
@@ -0,0 +1,297 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the tree a spec generates with an existing directory and reports entries
+ * that are missing, extra, or a file where the spec has a directory or the other way
+ * round. File contents are not compared.
+ *
+ * <p>The directory is walked in parallel and every directory is listed once; entries
+ * are not looked up one by one. A directory that can be listed is one, and on file
+ * systems whose directory link count is two plus the number of subdirectories (ext4,
+ * XFS, tmpfs and most others) the remaining names of a directory must be files once
+ * its expected subdirectories are accounted for. Only where the count does not add up
+ * are the remaining entries of that directory looked up. A missing or extra directory
+ * is reported once, without everything below it.</p>
+ *
+ * <p>Several spec and directory pairs can be checked in one run, so a nightly check of
+ * many repositories pays for JVM startup once.</p>
+ *
+ * <pre>
+ * java org.project.utils.StructureDiff [--kind=auto|generic|project] [--jobs=N] &lt;spec.md&gt; &lt;directory&gt; [...]
+ * </pre>
+ */
+public final class StructureDiff {
+    private static final int DEFAULT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    // Bookkeeping the generators keep in the root of an output directory
+    private static final Set<String> IGNORED = Set.of(GenerationManifest.FILE_NAME, GenerationJournal.FILE_NAME);
+
+    public enum Type {
+        MISSING, EXTRA, TYPE_MISMATCH
+    }
+
+    /**
+     * @param directory for {@link Type#EXTRA} whether the entry found is a directory,
+     *                  otherwise whether the spec has a directory there
+     */
+    public record Difference(Type type, String path, boolean directory) {
+        public String describe() {
+            String name = directory ? path + "/" : path;
+            return switch (type) {
+                case MISSING -> "Missing: " + name;
+                case EXTRA -> "Extra: " + name;
+                case TYPE_MISMATCH -> "Type mismatch: " + path +
+                        (directory ? " (expected a directory, found a file)" : " (expected a file, found a directory)");
+            };
+        }
+    }
+
+    /**
+     * @param expected          entries the spec generates
+     * @param directoriesListed directories read from the file system
+     * @param lookups           entries whose type had to be looked up individually
+     */
+    public record Result(List<Difference> differences, int expected, long directoriesListed, long lookups,
+                         long nanos) {
+        public boolean hasDrift() {
+            return !differences.isEmpty();
+        }
+
+        public long count(Type type) {
+            return differences.stream().filter(difference -> difference.type() == type).count();
+        }
+    }
+
+    public static void main(String[] args) {
+        GenerationOptions options;
+        BatchGenerator.Kind kind = BatchGenerator.Kind.AUTO;
+        int threads = DEFAULT_THREADS;
+        try {
+            // Diff options are taken out before the shared generation options are parsed
+            List<String> generationArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--kind=")) {
+                    kind = BatchGenerator.parseKind(arg.substring("--kind=".length()));
+                } else if (arg.startsWith("--jobs=")) {
+                    threads = BatchGenerator.parseJobs(arg.substring("--jobs=".length()));
+                } else {
+                    generationArgs.add(arg);
+                }
+            }
+            options = GenerationOptions.parse(generationArgs.toArray(new String[0])).rejectWatch("StructureDiff");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            options = null;
+        }
+
+        if (options == null || options.getArguments().isEmpty() || options.getArguments().size() % 2 != 0) {
+            System.out.println("Usage: java StructureDiff [options] <spec.md> <directory> [<spec.md> <directory> ...]");
+            System.out.println("Reports entries missing from each directory, extra entries and type mismatches");
+            System.out.println("against the tree its spec generates; exits with 1 if any directory has drifted.");
+            System.out.println("Example: java StructureDiff project-structure.md ./my-project");
+            System.out.println("Diff options:");
+            System.out.println("  --jobs=N    number of directories listed at the same time (default " + DEFAULT_THREADS + ")");
+            System.out.println("  --kind=auto|generic|project");
+            System.out.println("              generator the specs are for (default auto)");
+            System.out.println("  --quiet     print nothing but errors; the exit status tells whether there is drift");
+            System.exit(1);
+        }
+
+        boolean drift = false;
+        List<String> arguments = options.getArguments();
+        try (ProgressReporter reporter = new ProgressReporter(options.getReportLevel());
+             ForkJoinPool pool = new ForkJoinPool(threads)) {
+            for (int i = 0; i < arguments.size(); i += 2) {
+                Path spec = Paths.get(arguments.get(i));
+                Path directory = Paths.get(arguments.get(i + 1));
+                try {
+                    Result result = compare(Files.readString(spec), kind, directory, pool);
+                    report(directory, result, reporter);
+                    drift |= result.hasDrift();
+                } catch (IOException e) {
+                    // One unreadable repository does not stop the check of the others
+                    reporter.warn("Error: " + directory + ": " + BatchGenerator.describe(e));
+                    drift = true;
+                }
+            }
+        }
+        if (drift) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares the tree a spec generates with a directory, listing directories on the
+     * given pool.
+     */
+    public static Result compare(String spec, BatchGenerator.Kind kind, Path directory, ForkJoinPool pool)
+            throws IOException {
+        return compare(BatchGenerator.renderSpec(spec, kind), directory, pool);
+    }
+
+    /**
+     * Compares a captured tree with a directory. The directory itself must exist.
+     */
+    public static Result compare(CapturingSink expected, Path directory, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Not a directory: " + directory);
+        }
+
+        Walk walk = new Walk(expected);
+        try {
+            pool.invoke(walk.new Listing("", directory));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Difference> differences = new ArrayList<>(walk.differences);
+        differences.sort(Comparator.comparing(Difference::path));
+        return new Result(differences, expected.getDirectories().size() + expected.getFiles().size(),
+                walk.listed.sum(), walk.lookups.sum(), System.nanoTime() - start);
+    }
+
+    private static void report(Path directory, Result result, ProgressReporter reporter) {
+        for (Difference difference : result.differences()) {
+            reporter.info(difference.describe());
+        }
+        reporter.info(String.format("%s: %,d missing, %,d extra, %,d type mismatches; %,d expected entries, " +
+                        "%,d directories listed, %,d lookups in %.1f ms", directory, result.count(Type.MISSING),
+                result.count(Type.EXTRA), result.count(Type.TYPE_MISMATCH), result.expected(),
+                result.directoriesListed(), result.lookups(), result.nanos() / 1e6));
+    }
+
+    /**
+     * State of one comparison: the expected children of every directory and what was found.
+     */
+    private static final class Walk {
+        // Expected entries by parent path ("" for the root), true for directories
+        private final Map<String, Map<String, Boolean>> children = new HashMap<>();
+        private final Queue<Difference> differences = new ConcurrentLinkedQueue<>();
+        private final LongAdder listed = new LongAdder();
+        private final LongAdder lookups = new LongAdder();
+
+        Walk(CapturingSink expected) {
+            children.put("", new HashMap<>());
+            for (String directory : expected.getDirectories()) {
+                add(directory, true);
+                children.computeIfAbsent(directory, path -> new HashMap<>());
+            }
+            for (String file : expected.getFiles().keySet()) {
+                add(file, false);
+            }
+        }
+
+        private void add(String path, boolean directory) {
+            int slash = path.lastIndexOf('/');
+            String parent = slash < 0 ? "" : path.substring(0, slash);
+            children.computeIfAbsent(parent, key -> new HashMap<>()).put(path.substring(slash + 1), directory);
+        }
+
+        /**
+         * Lists a directory the spec expects and compares its entries. Completes with
+         * false if the path turns out to be a file. Never serialized, like any task.
+         */
+        @SuppressWarnings("serial")
+        private final class Listing extends RecursiveTask<Boolean> {
+            private final String path;
+            private final Path directory;
+
+            Listing(String path, Path directory) {
+                this.path = path;
+                this.directory = directory;
+            }
+
+            @Override
+            protected Boolean compute() {
+                Set<String> names = new HashSet<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (Path entry : stream) {
+                        names.add(entry.getFileName().toString());
+                    }
+                } catch (NotDirectoryException e) {
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                listed.increment();
+                if (path.isEmpty()) {
+                    names.removeAll(IGNORED);
+                }
+
+                List<Listing> subdirectories = new ArrayList<>();
+                List<String> files = new ArrayList<>();
+                for (Map.Entry<String, Boolean> child : children.getOrDefault(path, Map.of()).entrySet()) {
+                    String name = child.getKey();
+                    if (!names.remove(name)) {
+                        differences.add(new Difference(Type.MISSING, resolve(name), child.getValue()));
+                    } else if (child.getValue()) {
+                        subdirectories.add(new Listing(resolve(name), directory.resolve(name)));
+                    } else {
+                        files.add(name);
+                    }
+                }
+
+                int found = 0;
+                for (Listing subdirectory : invokeAll(subdirectories)) {
+                    if (subdirectory.join()) {
+                        found++;
+                    } else {
+                        differences.add(new Difference(Type.TYPE_MISMATCH, subdirectory.path, true));
+                    }
+                }
+
+                // What is left of the listing is extra
+                if (files.isEmpty() && names.isEmpty()) {
+                    return true;
+                }
+                boolean restAreFiles = isOnlySubdirectories(found);
+                for (String name : files) {
+                    if (!restAreFiles && isDirectory(name)) {
+                        differences.add(new Difference(Type.TYPE_MISMATCH, resolve(name), false));
+                    }
+                }
+                for (String name : names) {
+                    differences.add(new Difference(Type.EXTRA, resolve(name), !restAreFiles && isDirectory(name)));
+                }
+                return true;
+            }
+
+            /**
+             * Whether the directory has no subdirectories besides the ones found, going by
+             * its link count; false where the file system does not keep that count.
+             */
+            private boolean isOnlySubdirectories(int found) {
+                try {
+                    return Files.getAttribute(directory, "unix:nlink") instanceof Integer links &&
+                            links >= 2 && links - 2 == found;
+                } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+                    return false;
+                }
+            }
+
+            private boolean isDirectory(String name) {
+                lookups.increment();
+                try {
+                    return Files.readAttributes(directory.resolve(name), BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS).isDirectory();
+                } catch (IOException e) {
+                    // Removed since it was listed
+                    return false;
+                }
+            }
+
+            private String resolve(String name) {
+                return path.isEmpty() ? name : path + "/" + name;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.project.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Constant file stubs, encoded once when the class is initialised. Every file of a
+ * given type shares the same array, so writing a stub costs no encoding and no copy.
+ * The arrays are shared and must never be modified.
+ *
+ * <p>Each stub also has a read-only direct buffer view that {@link DirectorySink}
+ * writes from, which spares the channel the copy into a temporary direct buffer it
+ * makes for heap arrays.</p>
+ */
+final class StubTemplates {
+    static final byte[] EMPTY = new byte[0];
+
+    static final byte[] XML = encode("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- TODO: Add XML content -->\n");
+
+    static final byte[] PROPERTIES = encode("# Configuration properties\n# TODO: Add properties\n");
+
+    static final byte[] GITIGNORE = encode("# IDE files\n.idea/\n*.iml\n\n# Build files\ntarget/\nbuild/\nout/\n\n" +
+            "# OS files\n.DS_Store\nThumbs.db\n\n# Logs\n*.log\n");
+
+    static final byte[] YAML = encode("# YAML configuration\n# TODO: Add configuration\n");
+
+    static final byte[] JSON = encode("{\n  \"TODO\": \"Add JSON content\"\n}\n");
+
+    static final byte[] CSS = encode("/* CSS Styles */\n/* TODO: Add styles */\n");
+
+    static final byte[] JS = encode("// JavaScript\n// TODO: Add JavaScript code\n");
+
+    static final byte[] SQL = encode("-- SQL Script\n-- TODO: Add SQL statements\n");
+
+    static final byte[] POM_XML = encode("""
+            <?xml version="1.0" encoding="UTF-8"?>
+            <project xmlns="http://maven.apache.org/POM/4.0.0"
+                     xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                     xsi:schemaLocation="http://maven.apache.org/POM/4.0.0
+                     http://maven.apache.org/xsd/maven-4.0.0.xsd">
+                <modelVersion>4.0.0</modelVersion>
+
+                <groupId>com.example</groupId>
+                <artifactId>my-project</artifactId>
+                <version>1.0-SNAPSHOT</version>
+
+                <properties>
+                    <maven.compiler.source>11</maven.compiler.source>
+                    <maven.compiler.target>11</maven.compiler.target>
+                    <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>
+                </properties>
+
+                <dependencies>
+                    <!-- TODO: Add dependencies -->
+                </dependencies>
+            </project>
+            """);
+
+    static final byte[] BUILD_GRADLE = encode("""
+            plugins {
+                id 'java'
+            }
+
+            group 'com.example'
+            version '1.0-SNAPSHOT'
+
+            java {
+                sourceCompatibility = JavaVersion.VERSION_11
+                targetCompatibility = JavaVersion.VERSION_11
+            }
+
+            repositories {
+                mavenCentral()
+            }
+
+            dependencies {
+                // TODO: Add dependencies
+            }
+
+            test {
+                useJUnitPlatform()
+            }
+            """);
+
+    // Allocated on the first directory write, so archive output never pays for them
+    private static final class DirectBuffers {
+        static final Map<byte[], ByteBuffer> BY_STUB = new IdentityHashMap<>();
+
+        static {
+            for (byte[] stub : new byte[][]{XML, PROPERTIES, GITIGNORE, YAML, JSON, CSS, JS, SQL, POM_XML, BUILD_GRADLE}) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(stub.length);
+                buffer.put(stub).flip();
+                BY_STUB.put(stub, buffer.asReadOnlyBuffer());
+            }
+        }
+    }
+
+    private StubTemplates() {
+    }
+
+    private static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a buffer over the content ready for a channel write: a private view of the
+     * pre-encoded direct buffer for stubs, or a wrapper around the array otherwise.
+     */
+    static ByteBuffer bufferFor(byte[] content) {
+        ByteBuffer direct = DirectBuffers.BY_STUB.get(content);
+        return direct != null ? direct.duplicate() : ByteBuffer.wrap(content);
+    }
+}
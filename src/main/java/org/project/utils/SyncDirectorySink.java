@@ -0,0 +1,260 @@
+package org.project.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directory sink that makes the output directory match the spec instead of only
+ * adding to it. Missing entries are created, files whose content differs are
+ * replaced, files that already hold the generated content are left untouched, and on
+ * {@link #commit()} every entry the spec does not produce is deleted from the
+ * directories it does produce. The existing files are kept or replaced regardless of
+ * the overwrite setting.
+ *
+ * <p>The root itself is never swept: it is the directory the output was asked for,
+ * e.g. the current directory, and may hold anything besides the top-level entries the
+ * spec produces. Below those, deleting can be restricted further to an allow-list of
+ * paths relative to the root: an entry may then only be deleted if it is one of them
+ * or lies below one. Entries outside are kept and reported. A file standing where the
+ * spec has a directory, or the other way round, is deleted on the spot if allowed,
+ * otherwise writing the entry fails; a top-level entry is only replaced if the
+ * allow-list names it.</p>
+ *
+ * <p>What exists is known from the {@link DirectoryListingCache}, which is always
+ * enabled: every directory is listed once, and the same listing answers the existence
+ * checks while generating and tells which of its entries are extra. Extra entries are
+ * deleted as one parallel batch.</p>
+ *
+ * <p>When only part of the spec is generated, see {@link PathFilter}, entries outside
+ * that part are neither deleted nor reported.</p>
+ */
+public class SyncDirectorySink extends DirectorySink {
+    private final List<String> allowList;
+    private final PathFilter filter;
+    // Names every directory the spec produces must hold, by directory
+    private final Map<Path, Set<String>> expected = new ConcurrentHashMap<>();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger replaced = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final Set<String> deleted = new ConcurrentSkipListSet<>();
+    private final Set<String> kept = new ConcurrentSkipListSet<>();
+
+    public SyncDirectorySink(Path root, List<String> allowList) throws IOException {
+        this(root, allowList, PathFilter.ALL, Durability.NONE);
+    }
+
+    /**
+     * @param filter the part of the spec that is generated
+     */
+    public SyncDirectorySink(Path root, List<String> allowList, PathFilter filter, Durability durability)
+            throws IOException {
+        super(root, true, durability, true);
+        this.allowList = List.copyOf(allowList);
+        this.filter = filter;
+        // The root as DirectorySink keeps it, without calling getRoot, which a subclass
+        // that is not initialized yet may override
+        expected.put(root.toAbsolutePath(), ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * The listing cache cannot be turned off; its listings are what extra entries are
+     * found from.
+     */
+    @Override
+    public DirectorySink setListingCache(boolean enabled) {
+        return isListingCache() ? this : super.setListingCache(true);
+    }
+
+    public List<String> getAllowList() {
+        return allowList;
+    }
+
+    @Override
+    public boolean createDirectory(String path) throws IOException {
+        Path dir = resolve(path);
+        expect(dir, true);
+        removeFileAncestor(dir);
+        if (exists(dir)) {
+            if (getListingCache().isDirectory(dir)) {
+                return false;
+            }
+            removeConflicting(dir);
+        }
+        createDirectories(dir);
+        return true;
+    }
+
+    @Override
+    public boolean writeFile(String path, byte[] content) throws IOException {
+        Path file = resolve(path);
+        expect(file, false);
+        createParentDirectories(file);
+        if (!exists(file) && write(file, content, false)) {
+            written.incrementAndGet();
+            return true;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.isDirectory()) {
+            removeConflicting(file);
+            write(file, content, false);
+        } else if (attributes.size() == content.length && Arrays.equals(Files.readAllBytes(file), content)) {
+            unchanged.incrementAndGet();
+            return false;
+        } else {
+            write(file, content, true);
+        }
+        replaced.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    protected void createParentDirectories(Path file) throws IOException {
+        removeFileAncestor(file);
+        super.createParentDirectories(file);
+    }
+
+    /**
+     * Records the entry and all of its parents as produced by the spec.
+     */
+    private void expect(Path entry, boolean directory) {
+        if (directory) {
+            expected.computeIfAbsent(entry, dir -> ConcurrentHashMap.newKeySet());
+        }
+        Path root = getRoot();
+        for (Path child = entry; !child.equals(root) && child.getParent() != null; child = child.getParent()) {
+            Path parent = child.getParent();
+            boolean known = expected.containsKey(parent);
+            expected.computeIfAbsent(parent, dir -> ConcurrentHashMap.newKeySet()).add(child.getFileName().toString());
+            if (known) {
+                // Its own parents were recorded when it was
+                break;
+            }
+        }
+    }
+
+    /**
+     * Deletes a file standing where the entry needs one of its parent directories.
+     */
+    private void removeFileAncestor(Path entry) throws IOException {
+        Path root = getRoot();
+        Path level = entry.getParent();
+        while (level != null && !level.equals(root) && !exists(level)) {
+            level = level.getParent();
+        }
+        if (level != null && !level.equals(root) && !getListingCache().isDirectory(level)) {
+            removeConflicting(level);
+        }
+    }
+
+    /**
+     * Deletes an entry of the wrong type so the spec's entry can take its place.
+     */
+    private void removeConflicting(Path entry) throws IOException {
+        String path = relativize(entry);
+        if (!isAllowed(path)) {
+            throw new IOException("Cannot replace " + path + ", which has the wrong type and lies outside " +
+                    "the sync allow-list");
+        }
+        ParallelDelete.deleteTree(entry);
+        getListingCache().deleted(entry);
+        deleted.add(path);
+        directoryChanged(entry.getParent());
+    }
+
+    /**
+     * Deletes the entries of every produced directory that the spec does not produce,
+     * within the allow-list, then commits like a plain directory sink.
+     */
+    @Override
+    public void commit() throws IOException {
+        DirectoryListingCache listings = getListingCache();
+        Path root = getRoot();
+        List<Path> extra = new ArrayList<>();
+        for (Map.Entry<Path, Set<String>> directory : expected.entrySet()) {
+            if (directory.getKey().equals(root)) {
+                // Not the spec's to clean up
+                continue;
+            }
+            for (String name : listings.names(directory.getKey())) {
+                if (directory.getValue().contains(name)) {
+                    continue;
+                }
+                Path entry = directory.getKey().resolve(name);
+                String path = relativize(entry);
+                if (!filter.matches(path)) {
+                    continue;
+                }
+                if (isAllowed(path)) {
+                    extra.add(entry);
+                } else {
+                    kept.add(path);
+                }
+            }
+        }
+
+        // Every parent of an extra entry is produced, so no entry lies below another
+        ParallelDelete.deleteTrees(extra);
+        for (Path entry : extra) {
+            listings.deleted(entry);
+            deleted.add(relativize(entry));
+            directoryChanged(entry.getParent());
+        }
+        super.commit();
+    }
+
+    private boolean isAllowed(String path) {
+        if (allowList.isEmpty()) {
+            // Anywhere below the top-level entries
+            return path.indexOf('/') >= 0;
+        }
+        for (String prefix : allowList) {
+            if (path.equals(prefix) || path.startsWith(prefix + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String relativize(Path entry) {
+        return getRoot().relativize(entry).toString().replace(entry.getFileSystem().getSeparator(), "/");
+    }
+
+    @Override
+    public void report(ProgressReporter reporter) {
+        super.report(reporter);
+        reporter.info("Sync: " + written + " written, " + replaced + " replaced, " + unchanged + " unchanged, " +
+                deleted.size() + " deleted, " + kept.size() + " kept outside the allow-list");
+        for (String path : deleted) {
+            reporter.info("Deleted: " + path);
+        }
+        for (String path : kept) {
+            reporter.info("Kept (not in spec, outside the allow-list): " + path);
+        }
+    }
+
+    public int getWrittenCount() {
+        return written.get();
+    }
+
+    public int getReplacedCount() {
+        return replaced.get();
+    }
+
+    public int getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    public Set<String> getDeletedPaths() {
+        return deleted;
+    }
+
+    public Set<String> getKeptPaths() {
+        return kept;
+    }
+}
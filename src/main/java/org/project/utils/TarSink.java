@@ -0,0 +1,166 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams generated entries into a POSIX ustar archive, optionally gzip compressed.
+ * Names that do not fit the ustar name/prefix fields are written with a PAX
+ * extended header.
+ */
+public class TarSink extends ArchiveSink {
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final int PREFIX_LENGTH = 155;
+
+    private final OutputStream out;
+    private final long modificationTime;
+
+    public TarSink(OutputStream out, boolean gzip) throws IOException {
+        this(out, gzip, null);
+    }
+
+    /**
+     * @param fixedTime modification time of every entry, or null for the time the
+     *                  archive is opened. The gzip header never carries a time.
+     */
+    public TarSink(OutputStream out, boolean gzip, FileTime fixedTime) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        this.out = gzip ? new GZIPOutputStream(buffered, 64 * 1024) : buffered;
+        this.modificationTime = fixedTime != null ? fixedTime.to(TimeUnit.SECONDS) :
+                System.currentTimeMillis() / 1000;
+    }
+
+    @Override
+    protected void putDirectory(String name) throws IOException {
+        putEntry(name, '5', 0755, new byte[0]);
+    }
+
+    @Override
+    protected void putFile(String name, byte[] content) throws IOException {
+        putEntry(name, '0', 0644, content);
+    }
+
+    private void putEntry(String name, char type, int mode, byte[] content) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        String prefix = "";
+        String shortName = name;
+
+        if (nameBytes.length > NAME_LENGTH) {
+            int split = findPrefixSplit(name);
+            if (split > 0) {
+                prefix = name.substring(0, split);
+                shortName = name.substring(split + 1);
+            } else {
+                writePaxHeader(name);
+                shortName = truncate(name);
+            }
+        }
+
+        writeHeader(shortName, prefix, type, mode, content.length);
+        out.write(content);
+        pad(content.length);
+    }
+
+    // Returns the index of a '/' that splits the name into a prefix and a name that both fit
+    private static int findPrefixSplit(String name) {
+        for (int i = name.indexOf('/'); i > 0; i = name.indexOf('/', i + 1)) {
+            int prefixLength = name.substring(0, i).getBytes(StandardCharsets.UTF_8).length;
+            int nameLength = name.substring(i + 1).getBytes(StandardCharsets.UTF_8).length;
+            if (prefixLength > PREFIX_LENGTH) {
+                return -1;
+            }
+            if (nameLength <= NAME_LENGTH && nameLength > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String truncate(String name) {
+        String shortName = name;
+        while (shortName.getBytes(StandardCharsets.UTF_8).length > NAME_LENGTH) {
+            shortName = shortName.substring(1);
+        }
+        return shortName;
+    }
+
+    private void writePaxHeader(String name) throws IOException {
+        String record = " path=" + name + "\n";
+        int recordLength = record.getBytes(StandardCharsets.UTF_8).length;
+
+        // The record length includes the digits of the length itself
+        int length = recordLength + String.valueOf(recordLength).length();
+        if (String.valueOf(length).length() != String.valueOf(recordLength).length()) {
+            length++;
+        }
+
+        byte[] data = (length + record).getBytes(StandardCharsets.UTF_8);
+        writeHeader("PaxHeader/" + truncate(name.substring(name.lastIndexOf('/') + 1)), "", 'x', 0644, data.length);
+        out.write(data);
+        pad(data.length);
+    }
+
+    private void writeHeader(String name, String prefix, char type, int mode, long size) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        putString(header, 0, NAME_LENGTH, name);
+        putOctal(header, 100, 8, mode);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, modificationTime);
+        header[156] = (byte) type;
+        putString(header, 257, 6, "ustar");
+        header[263] = '0';
+        header[264] = '0';
+        putString(header, 345, PREFIX_LENGTH, prefix);
+
+        // Checksum is computed with the checksum field itself filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        String digits = String.format("%06o", checksum);
+        putString(header, 148, 6, digits);
+        header[154] = 0;
+        header[155] = ' ';
+
+        out.write(header);
+    }
+
+    private static void putString(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        StringBuilder padded = new StringBuilder();
+        for (int i = digits.length(); i < length - 1; i++) {
+            padded.append('0');
+        }
+        padded.append(digits);
+        putString(header, offset, length - 1, padded.toString());
+        header[offset + length - 1] = 0;
+    }
+
+    private void pad(long length) throws IOException {
+        int remainder = (int) (length % BLOCK_SIZE);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // End of archive is marked by two empty blocks
+        out.write(new byte[BLOCK_SIZE * 2]);
+        out.close();
+    }
+}
@@ -0,0 +1,136 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A text template compiled once into literal and placeholder segments. Placeholders
+ * are written as {@code ${name}}; a '$' that is not followed by '{' is literal text.
+ *
+ * <p>Literal segments are pre-encoded as UTF-8, and placeholder names are bound to
+ * parameter positions at compile time, so rendering is a straight copy into a
+ * reusable per-thread buffer with no parsing and no intermediate strings.</p>
+ */
+public final class Template {
+    private static final ThreadLocal<RenderBuffer> BUFFERS = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private final byte[][] literals;
+    private final int[] slots;
+    private final int parameterCount;
+
+    private Template(byte[][] literals, int[] slots, int parameterCount) {
+        this.literals = literals;
+        this.slots = slots;
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * Compiles a template whose placeholders are the given parameter names. The values
+     * passed to {@link #render(String...)} follow the same order.
+     *
+     * @throws IllegalArgumentException if the text uses an undeclared or unterminated placeholder
+     */
+    public static Template compile(String text, String... parameters) {
+        List<String> names = Arrays.asList(parameters);
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+
+        int start = 0;
+        int open;
+        while ((open = text.indexOf("${", start)) >= 0) {
+            int close = text.indexOf('}', open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder at offset " + open);
+            }
+            String name = text.substring(open + 2, close);
+            int slot = names.indexOf(name);
+            if (slot < 0) {
+                throw new IllegalArgumentException("Undeclared placeholder: ${" + name + "}");
+            }
+            literals.add(text.substring(start, open).getBytes(StandardCharsets.UTF_8));
+            slots.add(slot);
+            start = close + 1;
+        }
+        literals.add(text.substring(start).getBytes(StandardCharsets.UTF_8));
+
+        return new Template(literals.toArray(new byte[0][]),
+                slots.stream().mapToInt(Integer::intValue).toArray(), parameters.length);
+    }
+
+    /**
+     * Loads and compiles a UTF-8 template from the class path, e.g. "/templates/java-class.tmpl".
+     */
+    public static Template load(String resource, String... parameters) {
+        try (InputStream in = Template.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Template resource not found: " + resource);
+            }
+            // Independent of how the resource was checked out
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            return compile(text, parameters);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read template " + resource, e);
+        }
+    }
+
+    /**
+     * Renders the template with values given in parameter order and returns the UTF-8 bytes.
+     */
+    public byte[] render(String... values) {
+        if (values.length != parameterCount) {
+            throw new IllegalArgumentException("Expected " + parameterCount + " values but got " + values.length);
+        }
+
+        RenderBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        for (int i = 0; i < slots.length; i++) {
+            buffer.write(literals[i]);
+            buffer.write(values[slots[i]]);
+        }
+        buffer.write(literals[slots.length]);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Growable byte buffer reused across renders on the same thread.
+     */
+    private static final class RenderBuffer {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void write(byte[] data) {
+            ensureCapacity(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        void write(String value) {
+            int length = value.length();
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    // Not plain ASCII: encode the remainder properly
+                    write(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                bytes[size++] = (byte) c;
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
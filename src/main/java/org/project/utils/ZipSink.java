@@ -0,0 +1,64 @@
+package org.project.utils;
+
+import java.io.*;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.*;
+
+/**
+ * Streams generated entries straight into a {@link ZipOutputStream}.
+ */
+public class ZipSink extends ArchiveSink {
+    // Earlier times, 1980-01-01T00:00 included, are written as a time zone dependent
+    // extended timestamp
+    private static final LocalDateTime EARLIEST_TIME = LocalDateTime.of(1980, 1, 1, 0, 0, 2);
+
+    private final ZipOutputStream zip;
+    private final LocalDateTime fixedTime;
+
+    public ZipSink(OutputStream out) {
+        this(out, null);
+    }
+
+    /**
+     * @param fixedTime modification time of every entry, or null for the time it is written
+     */
+    public ZipSink(OutputStream out, FileTime fixedTime) {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(out));
+        // Stored as is, so the archive does not depend on the time zone it is written in
+        if (fixedTime == null) {
+            this.fixedTime = null;
+        } else {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(fixedTime.to(TimeUnit.SECONDS), 0, ZoneOffset.UTC);
+            this.fixedTime = time.isBefore(EARLIEST_TIME) ? EARLIEST_TIME : time;
+        }
+    }
+
+    @Override
+    protected void putDirectory(String name) throws IOException {
+        zip.putNextEntry(entry(name));
+        zip.closeEntry();
+    }
+
+    @Override
+    protected void putFile(String name, byte[] content) throws IOException {
+        zip.putNextEntry(entry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private ZipEntry entry(String name) {
+        ZipEntry entry = new ZipEntry(name);
+        if (fixedTime != null) {
+            entry.setTimeLocal(fixedTime);
+        }
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}